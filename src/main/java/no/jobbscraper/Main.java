@@ -2,6 +2,13 @@ package no.jobbscraper;
 
 import no.jobbscraper.argument.Argument;
 import no.jobbscraper.database.Database;
+import no.jobbscraper.database.ExpiryPurger;
+import no.jobbscraper.database.MappedSeenStore;
+import no.jobbscraper.database.SeenUrlWriter;
+import no.jobbscraper.database.SqliteSeenStore;
+import no.jobbscraper.http.HttpTransport;
+import no.jobbscraper.http.RateLimiter;
+import no.jobbscraper.http.ResponseCache;
 import no.jobbscraper.url.WebsiteURL;
 import no.jobbscraper.utils.StringUtils;
 import no.jobbscraper.webscraper.ArbeidsplassenNavScraper;
@@ -12,17 +19,34 @@ import no.jobbscraper.webscraper.KarriereStartScraper;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class Main {
 
     private static final Logger logger = Logger.getLogger(Main.class.getName());
+    private static final String FOLDER_PATH = System.getProperty("user.home") + "/jobbscraper";
+    private static final int DEFAULT_CACHE_SIZE_MEGABYTES = 512;
+    private static final double DEFAULT_SEEN_FILTER_FPR = 0.01;
+    private static final String SEEN_STORE_FILE = "seen_urls.map";
+    private static final int DEFAULT_SEEN_TTL_DAYS = 60;
+    private static final int WRITE_QUEUE_CAPACITY = 256;
+    private static final Duration GROUP_COMMIT_WINDOW = Duration.ofMillis(200);
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+    // The values accepted by arguments that choose between a few options
+    private static final Map<Argument, List<String>> ALLOWED_VALUES = Map.of(
+            Argument.DUPLICATES, List.of("tag", "suppress", "off"),
+            Argument.SEEN_STORE, List.of("sqlite", "mapped"));
 
     public static void main(String[] args) {
         readLoggingConfiguration();
@@ -33,7 +57,23 @@ public class Main {
 
         setUpArguments(args);
 
+        setUpResponseCache();
+
+        Database.setDefaultSeenTtl(Duration.ofDays(Argument.getIntValue(Argument.SEEN_TTL, DEFAULT_SEEN_TTL_DAYS)));
         Database.setUp();
+        dropTarget();
+        setUpSeenStore();
+        setUpRevisits();
+        SeenUrlWriter seenUrlWriter = new SeenUrlWriter(WRITE_QUEUE_CAPACITY, GROUP_COMMIT_WINDOW);
+        Database.setSeenUrlWriter(seenUrlWriter);
+        ExpiryPurger expiryPurger = new ExpiryPurger(PURGE_INTERVAL);
+        // Also runs when the scrapers are interrupted, so the queued urls are written and the database file is left consistent
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            expiryPurger.close();
+            seenUrlWriter.close();
+            Database.setSeenUrlWriter(null);
+            Database.close();
+        }, "database-shutdown"));
 
         setUpWebScrapers();
     }
@@ -60,8 +100,7 @@ public class Main {
      * @return {@code true} if the folder was created or already exists, {@code false} otherwise.
      */
     private static boolean createLogFolder() {
-        String folderPath = System.getProperty("user.home") + "/jobbscraper";
-        File folder = new File(folderPath);
+        File folder = new File(FOLDER_PATH);
 
         if (!folder.exists()) {
             boolean created = folder.mkdirs();
@@ -108,10 +147,97 @@ public class Main {
         logger.info("Running program with arguments -> " + Argument.getMap());
     }
 
+    /**
+     * Sets up the on-disk page cache in the "cache" folder inside the log folder,
+     * if it was enabled with the cache argument.
+     */
+    private static void setUpResponseCache() {
+        if (!Objects.equals(Argument.getValue(Argument.CACHE), "yes")) {
+            return;
+        }
+
+        long maxBytes = Argument.getIntValue(Argument.CACHE_SIZE, DEFAULT_CACHE_SIZE_MEGABYTES) * 1024L * 1024L;
+        try {
+            HttpTransport.setResponseCache(new ResponseCache(Path.of(FOLDER_PATH, "cache"), maxBytes));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not set up the page cache, continuing without it", e);
+        }
+    }
+
+    /**
+     * Forgets everything stored for the REST API given with the drop target argument, if any.
+     * Its rows are removed in the background by the expiry purger.
+     */
+    private static void dropTarget() {
+        String target = Argument.getValue(Argument.DROP_TARGET);
+        if (Objects.isNull(target)) {
+            return;
+        }
+
+        if (Database.dropTarget(target)) {
+            logger.info("Dropped target " + target);
+        } else {
+            logger.warning("Could not drop target " + target + ", nothing is stored for it");
+        }
+    }
+
+    /**
+     * Sets how often scraped job posts are revisited, if it was enabled with the revisit interval argument.
+     */
+    private static void setUpRevisits() {
+        if (Objects.isNull(Argument.getValue(Argument.REVISIT_INTERVAL))) {
+            return;
+        }
+
+        if (Objects.equals(Argument.getValue(Argument.SEEN_STORE), "mapped")) {
+            logger.warning("The mapped seen url store keeps no digests, job posts will not be revisited");
+        }
+        Database.setRevisitInterval(Duration.ofHours(Argument.getIntValue(Argument.REVISIT_INTERVAL, 0)));
+    }
+
+    /**
+     * Sets up where the scraped urls are stored, chosen with the seen store argument.
+     * If the memory-mapped file cannot be opened, the urls are stored in the database.
+     */
+    private static void setUpSeenStore() {
+        double falsePositiveRate = Argument.getDoubleValue(Argument.SEEN_FILTER_FPR, DEFAULT_SEEN_FILTER_FPR);
+        if (Objects.equals(Argument.getValue(Argument.SEEN_STORE), "mapped")) {
+            try {
+                Database.setSeenStore(MappedSeenStore.open(Path.of(SEEN_STORE_FILE), falsePositiveRate));
+                return;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not open the memory-mapped seen url store, using the database", e);
+            }
+        }
+
+        Database.setSeenStore(new SqliteSeenStore(falsePositiveRate));
+    }
+
+    /**
+     * Checks if a string is a number from 1 up to the largest int.
+     *
+     * @param value the string to check
+     * @return true if the string can be used as a numeric argument
+     */
+    private static boolean isPositiveInt(String value) {
+        if (!StringUtils.isPositiveNumber(value)) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(value) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     /**
      * Helper function to validate certain arguments
      * As of now it will check for the IP argument
-     * and make sure http is not included.
+     * and make sure http is not included, that
+     * numeric arguments are positive numbers,
+     * that rate limits can be parsed,
+     * that the seen filter false positive rate is between 0 and 1 and
+     * that arguments choosing between options are given one of them.
      *
      * If there is a validation error the program will exit.
      * @param argument is the argument to validate
@@ -123,6 +249,43 @@ public class Main {
             logger.severe("Remove the http protocol from the ip");
             System.exit(0);
         }
+
+        if (argument.isNumeric() && !isPositiveInt(argumentValue)) {
+            System.out.println(argument.get() + " must be a positive number no larger than " + Integer.MAX_VALUE);
+            logger.severe(argument.get() + " must be a positive number no larger than " + Integer.MAX_VALUE);
+            System.exit(0);
+        }
+
+        if (Argument.RATE_LIMITS.contains(argument)) {
+            try {
+                RateLimiter.parse(argumentValue);
+            } catch (IllegalArgumentException e) {
+                System.out.println(argument.get() + " must be on the form <requests per second>:<burst>");
+                logger.severe(argument.get() + " must be on the form <requests per second>:<burst>");
+                System.exit(0);
+            }
+        }
+
+        List<String> allowedValues = ALLOWED_VALUES.get(argument);
+        if (Objects.nonNull(allowedValues) && !allowedValues.contains(argumentValue)) {
+            System.out.println(argument.get() + " must be one of " + String.join(", ", allowedValues));
+            logger.severe(argument.get() + " must be one of " + String.join(", ", allowedValues));
+            System.exit(0);
+        }
+
+        if (argument.equals(Argument.SEEN_FILTER_FPR)) {
+            double falsePositiveRate;
+            try {
+                falsePositiveRate = Double.parseDouble(argumentValue);
+            } catch (NumberFormatException e) {
+                falsePositiveRate = -1;
+            }
+            if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+                System.out.println(argument.get() + " must be a number between 0 and 1");
+                logger.severe(argument.get() + " must be a number between 0 and 1");
+                System.exit(0);
+            }
+        }
     }
 
     /**
@@ -1,9 +1,11 @@
 package no.jobbscraper.argument;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public enum Argument {
 
@@ -17,17 +19,67 @@ public enum Argument {
     START_PAGE("--start-page", "--sp", List.of("All scrapers will start at the given page")),
     DISABLED_SCRAPERS("--disabled-scrapers", "--ds",
             List.of("Enter a comma separated list of scrapers you wish to disable.",
-                    "Example -> finn,karrierestart"));
+                    "Example -> finn,karrierestart")),
+    MAX_CONCURRENT_FETCHES("--max-concurrent-fetches", "--mcf",
+            List.of("Maximum number of detail pages each scraper fetches at the same time (default 4)"), true),
+    FINN_RATE_LIMIT("--finn-rate-limit", "--frl",
+            List.of("Requests per second and burst size against finn (default 4:8)",
+                    "Example -> 2.5:5")),
+    NAV_RATE_LIMIT("--nav-rate-limit", "--nrl",
+            List.of("Requests per second and burst size against nav (default 4:8)",
+                    "Example -> 2.5:5")),
+    KARRIERESTART_RATE_LIMIT("--karrierestart-rate-limit", "--krl",
+            List.of("Requests per second and burst size against karrierestart (default 4:8)",
+                    "Example -> 2.5:5")),
+    CACHE("--cache", "--c", List.of("Cache fetched pages on disk yes/no (default)")),
+    CACHE_SIZE("--cache-size", "--cs", List.of("Maximum size of the page cache in megabytes (default 512)"), true),
+    CACHE_LIST_TTL("--cache-list-ttl", "--clt",
+            List.of("Minutes a cached list page is used before it is revalidated (default 30)"), true),
+    CACHE_DETAIL_TTL("--cache-detail-ttl", "--cdt",
+            List.of("Minutes a cached detail page is used before it is revalidated (default 1440)"), true),
+    STREAM_PAGES("--stream-pages", "--stp",
+            List.of("Extract job posts from list pages while they download, and stop reading detail pages after the job post yes/no (default)")),
+    PREFETCH_PAGES("--prefetch-pages", "--pp",
+            List.of("Number of list pages each scraper fetches ahead of the page being scraped (default 1)"), true),
+    CRAWL_WORKERS("--crawl-workers", "--cw",
+            List.of("Number of workers each scraper splits its pages between when the last page is known (default 1)"), true),
+    SEEN_FILTER_FPR("--seen-filter-fpr", "--sff",
+            List.of("Share of new urls the in-memory seen url filter may still look up in the database (default 0.01)",
+                    "Example -> 0.001")),
+    SEEN_STORE("--seen-store", "--ss",
+            List.of("Where the scraped urls are stored, sqlite (default) or mapped for a memory-mapped file next to the database")),
+    SEEN_TTL("--seen-ttl", "--st",
+            List.of("Days a scraped url without a deadline is remembered (default 60).",
+                    "Urls with a deadline are remembered until 7 days after it"), true),
+    REVISIT_INTERVAL("--revisit-interval", "--ri",
+            List.of("Hours before a scraped job post is scraped again, and sent as an update if it changed (default off)",
+                    "Not supported by the mapped seen store"), true),
+    DUPLICATES("--duplicates", "--dup",
+            List.of("What to do with job posts that look like a job post sent before from another site,",
+                    "tag (default) to send them with duplicate_of set, suppress to not send them, or off")),
+    DROP_TARGET("--drop-target", "--dt",
+            List.of("Forget every url sent to the REST API at the given ip and port, for example a removed staging server",
+                    "Example -> 10.0.0.5:8080")),
+    MAX_IN_FLIGHT_POSTS("--max-in-flight-posts", "--mip",
+            List.of("Maximum number of posts to the REST API waiting for an answer at the same time (default 2)"), true);
+
+    public static final Set<Argument> RATE_LIMITS = EnumSet.of(FINN_RATE_LIMIT, NAV_RATE_LIMIT, KARRIERESTART_RATE_LIMIT);
 
     private final static Map<Argument, String> MAP = new HashMap<>();
     private final String name;
     private final String shortName;
     private final List<String> help;
+    private final boolean numeric;
 
     Argument(String name, String shortName, List<String> help) {
+        this(name, shortName, help, false);
+    }
+
+    Argument(String name, String shortName, List<String> help, boolean numeric) {
         this.name = name;
         this.shortName = shortName;
         this.help = help;
+        this.numeric = numeric;
     }
 
     public static Argument from(String argumentName) {
@@ -51,6 +103,37 @@ public enum Argument {
         return MAP.getOrDefault(argument, null);
     }
 
+    /**
+     * Returns the value of a numeric argument, or the given default if the argument was not provided.
+     * Numeric arguments are validated on startup, so parsing is expected to succeed.
+     *
+     * @param argument      The numeric argument to look up.
+     * @param defaultValue  The value to return if the argument was not provided.
+     * @return              The parsed value of the argument, or the default value.
+     */
+    public static int getIntValue(Argument argument, int defaultValue) {
+        String value = getValue(argument);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Returns the value of a decimal argument, or the given default if the argument was not provided.
+     *
+     * @param argument      The decimal argument to look up.
+     * @param defaultValue  The value to return if the argument was not provided.
+     * @return              The parsed value of the argument, or the default value.
+     */
+    public static double getDoubleValue(Argument argument, double defaultValue) {
+        String value = getValue(argument);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Double.parseDouble(value);
+    }
+
     public final String get() {
         return this.name;
     }
@@ -63,4 +146,8 @@ public enum Argument {
         return this.help;
     }
 
+    public boolean isNumeric() {
+        return this.numeric;
+    }
+
 }
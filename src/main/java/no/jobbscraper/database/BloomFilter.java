@@ -0,0 +1,106 @@
+package no.jobbscraper.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 64-bit hashes, answering whether a hash may have been added or definitely has not.
+ * Bits are set with compare-and-set, so hashes can be added and looked up from several threads without a lock.
+ * Once more hashes than the expected number have been added, the false positive rate goes up.
+ */
+final class BloomFilter {
+
+    private static final int MAX_HASH_FUNCTIONS = 30;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final AtomicLong insertions;
+
+    /**
+     * Constructs a BloomFilter sized for the given number of hashes and false positive rate.
+     *
+     * @param expectedInsertions    the number of hashes expected to be added
+     * @param falsePositiveRate     the share of lookups of hashes never added that may answer "maybe", between 0 and 1
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs positive insertions and a false positive rate between 0 and 1");
+        }
+
+        // m = -n ln p / (ln 2)^2 and k = m / n ln 2
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + Long.SIZE - 1) / Long.SIZE);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashFunctions = (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS,
+                Math.round((double) bitCount / expectedInsertions * Math.log(2))));
+        this.expectedInsertions = expectedInsertions;
+        this.insertions = new AtomicLong();
+    }
+
+    /**
+     * Adds the given hash.
+     *
+     * @param value the hash to add, with all bits well mixed
+     */
+    void add(long value) {
+        long firstHash = value;
+        long secondHash = JobKeys.mix(firstHash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(Math.floorMod(firstHash + i * secondHash, bitCount));
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Checks if the given hash may have been added.
+     *
+     * @param value the hash to look up
+     * @return      false if the hash has definitely not been added, true if it may have been
+     */
+    boolean mightContain(long value) {
+        long firstHash = value;
+        long secondHash = JobKeys.mix(firstHash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            if (!isBitSet(Math.floorMod(firstHash + i * secondHash, bitCount))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if more hashes have been added than the filter was sized for.
+     *
+     * @return true if the false positive rate is above the one asked for
+     */
+    boolean isOverCapacity() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean isBitSet(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+}
@@ -1,60 +1,915 @@
 package no.jobbscraper.database;
 
+import no.jobbscraper.http.Validators;
+import no.jobbscraper.jobpost.JobPost;
+import no.jobbscraper.url.JobSource;
+
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Stores the urls that have been scraped, and the cache validators of list pages.
+ * All access goes through one long-lived connection, with each statement prepared once and reused.
+ * A SQLite connection and its statements must not be used by two threads at once,
+ * so every call holds a {@link ReentrantLock}, which unlike synchronized does not pin the virtual threads of the scrapers.
+ * The driver itself runs native code, which does pin a virtual thread to its carrier for as long as it runs,
+ * so calls from virtual threads are handed to a platform thread and waited for, see {@link #onJdbcThread(Supplier)}.
+ * Calls to a seen url store that makes no JDBC calls run on the calling thread, see {@link ISeenStore#usesJdbc()}.
+ * The scraped urls are kept in an {@link ISeenStore}, which is the database itself unless another store is set.
+ */
 public class Database {
 
     private static final Logger logger = Logger.getLogger(Database.class.getName());
+    private static final Path DEFAULT_FILE = Path.of("test.db");
+    // Held by every use of the connection, also from the seen url store
+    static final ReentrantLock lock = new ReentrantLock();
+    private static final Map<String, PreparedStatement> statements = new HashMap<>();
+    // The id of each target in TARGETS by its ip and port, guarded by the lock
+    private static final Map<String, Long> targetIds = new HashMap<>();
+    // Runs the calls made from virtual threads. One thread is enough, as the calls take turns at the connection anyway
+    private static final ExecutorService jdbcExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("database").daemon().factory());
+    // Upgrades of the schema in order, the schema version is the number of upgrades applied
+    private static final List<Migration> MIGRATIONS = List.of(
+            Database::migrateToVersion1,
+            Database::migrateToVersion2,
+            Database::migrateToVersion3,
+            Database::migrateToVersion4,
+            Database::migrateToVersion5,
+            Database::migrateToVersion6,
+            Database::migrateToVersion7,
+            Database::migrateToVersion8
+    );
+    // Applied to every connection. WAL lets reads run while a write is in progress,
+    // and with WAL, NORMAL only risks the last commits on power loss, never corruption
+    private static final List<String> PRAGMAS = List.of(
+            // Takes effect on a new file right away, and on an existing one only at its next VACUUM
+            "PRAGMA auto_vacuum = INCREMENTAL",
+            "PRAGMA journal_mode = WAL",
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA cache_size = -16000",
+            "PRAGMA temp_store = MEMORY",
+            "PRAGMA busy_timeout = 5000"
+    );
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+    // The value of PRAGMA auto_vacuum when set to INCREMENTAL
+    private static final int INCREMENTAL_AUTO_VACUUM = 2;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    // A job post can stay listed for a while after its deadline, and must not be scraped again meanwhile
+    private static final int EXPIRY_GRACE_DAYS = 7;
+    private static final Duration DEFAULT_SEEN_TTL = Duration.ofDays(60);
+    private static final Duration DEFAULT_REVISIT_INTERVAL = Duration.ofDays(1);
+    private static volatile ISeenStore seenStore;
+    private static volatile SeenUrlWriter seenUrlWriter;
+    private static final DuplicateIndex duplicateIndex = new DuplicateIndex();
+    private static volatile Duration defaultSeenTtl = DEFAULT_SEEN_TTL;
+    private static volatile Duration revisitInterval = DEFAULT_REVISIT_INTERVAL;
+    private static volatile Path file = DEFAULT_FILE;
+    private static Connection connection;
 
     private Database() {
         throw new AssertionError();
     }
 
+    /**
+     * Sets the database file, test.db in the working directory by default.
+     * An open connection is closed, so the next use of the database opens the new file.
+     *
+     * @param databaseFile the path of the database file
+     */
+    public static void setFile(Path databaseFile) {
+        close();
+        file = databaseFile;
+    }
+
+    /**
+     * Creates the tables, or upgrades them to the current schema version.
+     * A new file is created with incremental auto-vacuum, so it can give pages freed by purged rows back in small steps.
+     * An existing file is switched later by {@link #enableIncrementalVacuum()}, as that rewrites the whole file.
+     */
     public static void setUp() {
-        createTable();
+        migrate();
+    }
+
+    /**
+     * Sets how long urls of job posts without a deadline are kept. Must be called before {@link #setUp()},
+     * as rows from before urls had an expiry are given this time when the database is upgraded.
+     *
+     * @param ttl the time to keep urls without a deadline
+     */
+    public static void setDefaultSeenTtl(Duration ttl) {
+        defaultSeenTtl = ttl;
+    }
+
+    /**
+     * Sets how long after a job post was scraped it is due for a revisit.
+     *
+     * @param interval the time between revisits of a job post
+     */
+    public static void setRevisitInterval(Duration interval) {
+        revisitInterval = interval;
+    }
+
+    /**
+     * Returns when a url scraped now is due for a revisit.
+     *
+     * @return the revisit time in epoch seconds
+     */
+    static long revisitAt() {
+        return Instant.now().plus(revisitInterval).getEpochSecond();
+    }
+
+    /**
+     * Returns when a url should be removed from the seen url store.
+     * Urls are kept until {@value #EXPIRY_GRACE_DAYS} days after the deadline of their job post,
+     * and at least that long from now, or for the default time if the job post has no deadline.
+     *
+     * @param deadline  The deadline of the job post, or null if it has none.
+     * @return          The expiry in epoch seconds.
+     */
+    static long expiresAt(LocalDate deadline) {
+        Instant now = Instant.now();
+        if (Objects.isNull(deadline)) {
+            return now.plus(defaultSeenTtl).getEpochSecond();
+        }
+        long afterDeadline = deadline.plusDays(EXPIRY_GRACE_DAYS).atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        return Math.max(afterDeadline, now.plus(Duration.ofDays(EXPIRY_GRACE_DAYS)).getEpochSecond());
+    }
+
+    /**
+     * Closes the seen url store, the statements and the connection.
+     * The connection is opened again if the database is used afterwards.
+     */
+    public static void close() {
+        lock.lock();
+        try {
+            if (Objects.nonNull(seenStore)) {
+                seenStore.close();
+                seenStore = null;
+            }
+            duplicateIndex.clear();
+            targetIds.clear();
+            for (PreparedStatement preparedStatement : statements.values()) {
+                preparedStatement.close();
+            }
+            statements.clear();
+            if (Objects.nonNull(connection)) {
+                connection.close();
+                connection = null;
+                logger.info("Closed database connection");
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when closing the database connection", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the store the scraped urls are kept in, closing the store used before.
+     *
+     * @param store the store to use from now on
+     */
+    public static void setSeenStore(ISeenStore store) {
+        lock.lock();
+        try {
+            ISeenStore previousStore = seenStore;
+            seenStore = store;
+            if (Objects.nonNull(previousStore) && previousStore != store) {
+                previousStore.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the writer the scraped urls are queued on by {@link #insertUrlsLater(List, String)}
+     * and {@link #updateUrlsLater(List, String)}. Without one they are written right away.
+     *
+     * @param writer the writer to use from now on, or null to write right away
+     */
+    public static void setSeenUrlWriter(SeenUrlWriter writer) {
+        seenUrlWriter = writer;
     }
 
+    /**
+     * Checks if the url has been stored for the ip, or is waiting to be.
+     *
+     * @see ISeenStore#exists(String, String)
+     */
     public static boolean exists(String url, String fullIp) {
-        try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(
-                     "SELECT EXISTS (SELECT 1 FROM VISITED_URLS WHERE URL = ? AND IP = ?)")) {
+        return filterNotPending(List.of(url), fullIp).isEmpty()
+                || withSeenStore(store -> store.exists(url, fullIp));
+    }
+
+    /**
+     * Finds the urls that have not been stored for the ip, and are not waiting to be.
+     *
+     * @see ISeenStore#filterUnseen(List, String)
+     */
+    public static List<String> filterUnseen(List<String> urls, String fullIp) {
+        List<String> notPending = filterNotPending(urls, fullIp);
+        return withSeenStore(store -> store.filterUnseen(notPending, fullIp));
+    }
+
+    /**
+     * @see ISeenStore#insertUrl(String, String)
+     */
+    public static void insertUrl(String url, String fullIp) {
+        withSeenStore(store -> {
+            store.insertUrl(url, fullIp);
+            return null;
+        });
+    }
+
+    /**
+     * @see ISeenStore#insertUrls(List, String)
+     */
+    public static List<String> insertUrls(List<SeenUrl> seenUrls, String fullIp) {
+        return withSeenStore(store -> store.insertUrls(seenUrls, fullIp));
+    }
+
+    /**
+     * Queues the urls to be inserted by the seen url writer, or inserts them right away if there is none.
+     * Urls that were already stored are logged.
+     *
+     * @see ISeenStore#insertUrls(List, String)
+     */
+    public static void insertUrlsLater(List<SeenUrl> seenUrls, String fullIp) {
+        SeenUrlWriter writer = seenUrlWriter;
+        if (Objects.nonNull(writer)) {
+            writer.insertUrls(seenUrls, fullIp);
+            return;
+        }
+        List<String> conflicts = insertUrls(seenUrls, fullIp);
+        if (!conflicts.isEmpty()) {
+            logger.warning(conflicts.size() + " urls were already marked as scraped: " + conflicts);
+        }
+    }
+
+    /**
+     * Queues the urls to be updated by the seen url writer, or updates them right away if there is none.
+     *
+     * @see ISeenStore#updateUrls(List, String)
+     */
+    public static void updateUrlsLater(List<SeenUrl> seenUrls, String fullIp) {
+        SeenUrlWriter writer = seenUrlWriter;
+        if (Objects.nonNull(writer)) {
+            writer.updateUrls(seenUrls, fullIp);
+            return;
+        }
+        updateUrls(seenUrls, fullIp);
+    }
+
+    /**
+     * Returns the number of scraped urls waiting to be written.
+     *
+     * @return the depth of the queue of the seen url writer, 0 if there is none
+     */
+    public static int getWriteQueueDepth() {
+        SeenUrlWriter writer = seenUrlWriter;
+        return Objects.isNull(writer) ? 0 : writer.getQueueDepth();
+    }
+
+    /**
+     * Finds the urls that are due for a revisit by now.
+     *
+     * @see ISeenStore#findDueForRevisit(List, String, long)
+     */
+    public static Map<String, Long> findDueForRevisit(List<String> urls, String fullIp) {
+        return withSeenStore(store -> store.findDueForRevisit(urls, fullIp, Instant.now().getEpochSecond()));
+    }
+
+    /**
+     * @see ISeenStore#updateUrls(List, String)
+     */
+    public static void updateUrls(List<SeenUrl> seenUrls, String fullIp) {
+        withSeenStore(store -> {
+            store.updateUrls(seenUrls, fullIp);
+            return null;
+        });
+    }
+
+    /**
+     * Removes urls that have expired by now.
+     *
+     * @see ISeenStore#purgeExpired(long, int)
+     */
+    public static int purgeExpired(int maxRows) {
+        return withSeenStore(store -> store.purgeExpired(Instant.now().getEpochSecond(), maxRows));
+    }
+
+    /**
+     * Finds the job posts that look like job posts sent before from another site, comparing their SimHash
+     * fingerprints. Job posts also count as duplicates of job posts from another site earlier in the list.
+     *
+     * @param jobPosts  The job posts about to be sent.
+     * @param fullIp    The ip and port of the REST API the job posts are sent to.
+     * @return          The source and id of the job post sent before, for example finn:349553613,
+     *                  by the url of each duplicate. Empty if the lookup failed.
+     */
+    public static Map<String, String> findOriginals(List<JobPost> jobPosts, String fullIp) {
+        return onJdbcThread(() -> duplicateIndex.findOriginals(jobPosts, fullIp));
+    }
+
+    /**
+     * Stores the fingerprints of job posts that were sent, so copies of them from other sites are found.
+     *
+     * @param jobPosts  The job posts that were sent.
+     * @param fullIp    The ip and port of the REST API the job posts were sent to.
+     */
+    public static void addFingerprints(List<JobPost> jobPosts, String fullIp) {
+        runOnJdbcThread(() -> duplicateIndex.add(jobPosts, fullIp));
+    }
+
+    /**
+     * Removes fingerprints of job posts that have expired by now.
+     *
+     * @param maxRows   The most fingerprints to remove in this call.
+     * @return          The number of fingerprints removed.
+     */
+    public static int purgeExpiredFingerprints(int maxRows) {
+        return onJdbcThread(() -> duplicateIndex.purgeExpired(Instant.now().getEpochSecond(), maxRows));
+    }
+
+    /**
+     * Forgets everything stored for the target, the REST API at the ip and port, so every url is unseen for it again.
+     * Only the target is removed here, its rows are removed in steps by {@link #purgeDroppedTargets(int)}.
+     * A memory-mapped seen url store keeps the urls of the target.
+     *
+     * @param fullIp    The ip and port of the REST API.
+     * @return          true if the target was stored, false if not or if it could not be removed.
+     */
+    public static boolean dropTarget(String fullIp) {
+        return onJdbcThread(() -> {
+            lock.lock();
+            try {
+                PreparedStatement preparedStatement = prepare("UPDATE TARGETS SET IP = NULL WHERE IP = ?");
+                preparedStatement.setString(1, fullIp);
+                boolean dropped = preparedStatement.executeUpdate() > 0;
+                targetIds.remove(fullIp);
+                duplicateIndex.forget(fullIp);
+                return dropped;
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Error occurred when dropping target " + fullIp, e.getMessage());
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Removes at most maxRows rows of dropped targets, and each target itself once it has no rows left.
+     * Once a target is removed, the call moves on to the next dropped target, so targets without rows do not end it.
+     * The rows of a target are next to each other in the tables keyed by target, so each step is a range delete.
+     *
+     * @param maxRows   The most rows to remove in this call.
+     * @return          The number of rows removed. Less than maxRows when no dropped target is left.
+     */
+    public static int purgeDroppedTargets(int maxRows) {
+        return onJdbcThread(() -> {
+            lock.lock();
+            try (Statement statement = getConnection().createStatement()) {
+                int removed = 0;
+                while (removed < maxRows) {
+                    long targetId = queryLong(statement, "SELECT IFNULL(MIN(ID), 0) FROM TARGETS WHERE IP IS NULL");
+                    if (targetId == 0) {
+                        break;
+                    }
+
+                    for (String table : List.of("SEEN_JOBS", "JOB_FINGERPRINTS")) {
+                        PreparedStatement preparedStatement = prepare("DELETE FROM " + table + " WHERE (TARGET_ID, JOB_KEY) IN " +
+                                "(SELECT TARGET_ID, JOB_KEY FROM " + table + " WHERE TARGET_ID = ? LIMIT ?)");
+                        preparedStatement.setLong(1, targetId);
+                        preparedStatement.setInt(2, maxRows - removed);
+                        removed += preparedStatement.executeUpdate();
+                    }
+                    if (removed >= maxRows) {
+                        break;
+                    }
+                    statement.executeUpdate("DELETE FROM TARGETS WHERE ID = " + targetId);
+                    logger.info("Removed dropped target " + targetId);
+                }
+                return removed;
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Error occurred when purging dropped targets", e.getMessage());
+                return 0;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns the id of the target, the REST API at the ip and port, adding the target on first use.
+     * Must be called while holding the lock.
+     *
+     * @param fullIp    The ip and port of the REST API.
+     * @return          The id of the target in TARGETS.
+     * @throws SQLException if the target could not be found or added
+     */
+    static long targetId(String fullIp) throws SQLException {
+        Long targetId = targetIds.get(fullIp);
+        if (Objects.nonNull(targetId)) {
+            return targetId;
+        }
+
+        PreparedStatement insertStatement = prepare("INSERT OR IGNORE INTO TARGETS (IP) VALUES (?)");
+        insertStatement.setString(1, fullIp);
+        insertStatement.executeUpdate();
+        PreparedStatement selectStatement = prepare("SELECT ID FROM TARGETS WHERE IP = ?");
+        selectStatement.setString(1, fullIp);
+        try (ResultSet resultSet = selectStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException("Target " + fullIp + " was not added");
+            }
+            targetId = resultSet.getLong(1);
+        }
+        targetIds.put(fullIp, targetId);
+        return targetId;
+    }
+
+    /**
+     * Gives free pages at the end of the database file back to the file system,
+     * at most the given number so the connection is only held briefly.
+     *
+     * @param maxPages  The most pages to give back in this call.
+     * @return          The number of bytes the file shrank by.
+     */
+    public static long reclaimFreePages(int maxPages) {
+        lock.lock();
+        try (Statement statement = getConnection().createStatement()) {
+            long pageSize = queryLong(statement, "PRAGMA page_size");
+            long pagesBefore = queryLong(statement, "PRAGMA page_count");
+            long pagesToFree = Math.min(maxPages, queryLong(statement, "PRAGMA freelist_count"));
+            // The pragma frees one page per step, and the driver only steps it once per execution
+            for (long page = 0; page < pagesToFree; page++) {
+                statement.execute("PRAGMA incremental_vacuum(1)");
+            }
+            return (pagesBefore - queryLong(statement, "PRAGMA page_count")) * pageSize;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when reclaiming free pages", e.getMessage());
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the work on the database thread if called from a virtual thread, and waits for it.
+     * Waiting on a future parks the virtual thread, freeing its carrier, where running the driver would pin it.
+     * Platform threads, like the database thread itself, run the work right away.
+     */
+    private static <T> T onJdbcThread(Supplier<T> work) {
+        if (!Thread.currentThread().isVirtual()) {
+            return work.get();
+        }
+        try {
+            return CompletableFuture.supplyAsync(work, jdbcExecutor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static void runOnJdbcThread(Runnable work) {
+        onJdbcThread(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the work with the seen url store, on the database thread if the store uses JDBC, see {@link #onJdbcThread(Supplier)}.
+     * Stores that make no JDBC calls are used by the calling thread, so their lookups do not take turns at the database thread.
+     */
+    private static <T> T withSeenStore(Function<ISeenStore, T> work) {
+        ISeenStore store = seenStoreForCall();
+        return store.usesJdbc() ? onJdbcThread(() -> work.apply(store)) : work.apply(store);
+    }
+
+    /**
+     * Returns the seen url store, creating the default one on the database thread, as it reads the database.
+     */
+    private static ISeenStore seenStoreForCall() {
+        ISeenStore store = seenStore;
+        return Objects.nonNull(store) ? store : onJdbcThread(Database::getSeenStore);
+    }
+
+    private static List<String> filterNotPending(List<String> urls, String fullIp) {
+        SeenUrlWriter writer = seenUrlWriter;
+        return Objects.isNull(writer) ? urls : writer.filterNotPending(urls, fullIp);
+    }
+
+    /**
+     * Returns the seen url store, storing the urls in the database if no other store has been set.
+     */
+    private static ISeenStore getSeenStore() {
+        ISeenStore store = seenStore;
+        if (Objects.nonNull(store)) {
+            return store;
+        }
+        lock.lock();
+        try {
+            if (Objects.isNull(seenStore)) {
+                seenStore = new SqliteSeenStore(DEFAULT_FALSE_POSITIVE_RATE);
+            }
+            return seenStore;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the cache validators stored for the given url.
+     *
+     * @param url   The url of the page.
+     * @return      The validators from the last complete scrape of the page, or null if none are stored.
+     */
+    public static Validators findValidators(String url) {
+        return onJdbcThread(() -> selectValidators(url));
+    }
+
+    private static Validators selectValidators(String url) {
+        lock.lock();
+        try {
+            PreparedStatement preparedStatement = prepare("SELECT ETAG, LAST_MODIFIED FROM HTTP_VALIDATORS WHERE URL = ?");
             preparedStatement.setString(1, url);
-            preparedStatement.setString(2, fullIp);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                return resultSet.next() && resultSet.getBoolean(1);
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new Validators(resultSet.getString(1), resultSet.getString(2));
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Error occurred when checking if " + url + " & " + fullIp + " exists", e.getMessage());
-            return false;
+            logger.log(Level.SEVERE, "Error occurred when finding validators for " + url, e.getMessage());
+            return null;
+        } finally {
+            lock.unlock();
         }
     }
 
-    public static void insertUrl(String url, String fullIp) {
-        try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection
-                     .prepareStatement("INSERT INTO VISITED_URLS (URL, IP) VALUES (?, ?)")) {
+    /**
+     * Stores the cache validators for the given url, replacing any stored before.
+     *
+     * @param url           The url of the page.
+     * @param validators    The validators sent by the server for the page.
+     */
+    public static void saveValidators(String url, Validators validators) {
+        runOnJdbcThread(() -> replaceValidators(url, validators));
+    }
+
+    private static void replaceValidators(String url, Validators validators) {
+        lock.lock();
+        try {
+            PreparedStatement preparedStatement = prepare(
+                    "INSERT OR REPLACE INTO HTTP_VALIDATORS (URL, ETAG, LAST_MODIFIED) VALUES (?, ?, ?)");
+            preparedStatement.setString(1, url);
+            preparedStatement.setString(2, validators.etag());
+            preparedStatement.setString(3, validators.lastModified());
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when saving validators for " + url, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the cache validators for the given url, so the page is fetched in full next time.
+     *
+     * @param url   The url of the page.
+     */
+    public static void deleteValidators(String url) {
+        runOnJdbcThread(() -> removeValidators(url));
+    }
+
+    private static void removeValidators(String url) {
+        lock.lock();
+        try {
+            PreparedStatement preparedStatement = prepare("DELETE FROM HTTP_VALIDATORS WHERE URL = ?");
             preparedStatement.setString(1, url);
-            preparedStatement.setString(2, fullIp);
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Error occurred when inserting " + url + " & " + fullIp, e.getMessage());
+            logger.log(Level.SEVERE, "Error occurred when deleting validators for " + url, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the connection, opening it on first use. Must be called while holding the lock.
+     *
+     * @return the connection to the database
+     * @throws SQLException if the connection could not be opened
+     */
+    static Connection getConnection() throws SQLException {
+        if (Objects.isNull(connection) || connection.isClosed()) {
+            statements.clear();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+            try (Statement statement = connection.createStatement()) {
+                for (String pragma : PRAGMAS) {
+                    statement.execute(pragma);
+                }
+            }
         }
+        return connection;
     }
 
-    private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection("jdbc:sqlite:test.db");
+    /**
+     * Returns the prepared statement for the given sql, preparing it on first use. Must be called while holding the lock.
+     *
+     * @param sql   the sql of the statement
+     * @return      the prepared statement, with the parameters of its last use cleared
+     * @throws SQLException if the statement could not be prepared
+     */
+    static PreparedStatement prepare(String sql) throws SQLException {
+        Connection currentConnection = getConnection();
+        PreparedStatement preparedStatement = statements.get(sql);
+        if (Objects.isNull(preparedStatement)) {
+            preparedStatement = currentConnection.prepareStatement(sql);
+            statements.put(sql, preparedStatement);
+        } else {
+            preparedStatement.clearParameters();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Creates the tables, or upgrades them from the schema version stored in user_version.
+     * Each upgrade runs in its own transaction, so a failed upgrade leaves the database at the version before it.
+     */
+    private static void migrate() {
+        lock.lock();
+        try {
+            Connection currentConnection = getConnection();
+            int version = getSchemaVersion(currentConnection);
+            for (int nextVersion = version + 1; nextVersion <= MIGRATIONS.size(); nextVersion++) {
+                runMigration(currentConnection, nextVersion, MIGRATIONS.get(nextVersion - 1));
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when migrating the database", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private static void createTable() {
-        try (Connection connection = getConnection();
-             Statement statement = connection.createStatement()) {
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS VISITED_URLS " +
-                    "(URL CHAR(255) NOT NULL, " +
-                    "IP CHAR(255) NOT NULL)");
+    /**
+     * Switches the database to incremental auto-vacuum, so pages freed by purges can be given back with
+     * {@link #reclaimFreePages(int)} instead of a full VACUUM. Does nothing if the database already uses it.
+     * <p>
+     * Switching rewrites the file once with VACUUM, holding the database until it is done,
+     * so it is left to {@link ExpiryPurger} instead of delaying the start of the scrapers.
+     *
+     * @return true if the database uses incremental auto-vacuum
+     */
+    public static boolean enableIncrementalVacuum() {
+        lock.lock();
+        try (Statement statement = getConnection().createStatement()) {
+            if (queryLong(statement, "PRAGMA auto_vacuum") == INCREMENTAL_AUTO_VACUUM) {
+                return true;
+            }
+            long start = System.nanoTime();
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            statement.execute("VACUUM");
+            logger.info(String.format("Enabled incremental vacuum of the database, rewriting it took %s ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return true;
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Error occurred when creating table", e.getMessage());
+            logger.log(Level.WARNING, "Error occurred when enabling incremental vacuum, freed pages stay in the file", e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
         }
     }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    private static int getSchemaVersion(Connection currentConnection) throws SQLException {
+        try (Statement statement = currentConnection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static void runMigration(Connection currentConnection, int version, Migration migration) throws SQLException {
+        currentConnection.setAutoCommit(false);
+        try (Statement statement = currentConnection.createStatement()) {
+            migration.migrate(statement);
+            statement.executeUpdate("PRAGMA user_version = " + version);
+            currentConnection.commit();
+            logger.info("Migrated database to schema version " + version);
+        } catch (SQLException e) {
+            currentConnection.rollback();
+            throw e;
+        } finally {
+            currentConnection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * The tables as they were before the schema was versioned.
+     * Databases from then are at user_version 0 and already have these tables.
+     */
+    private static void migrateToVersion1(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS VISITED_URLS " +
+                "(URL CHAR(255) NOT NULL, " +
+                "IP CHAR(255) NOT NULL)");
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS HTTP_VALIDATORS " +
+                "(URL TEXT PRIMARY KEY, " +
+                "ETAG TEXT, " +
+                "LAST_MODIFIED TEXT)");
+    }
+
+    /**
+     * Gives VISITED_URLS a composite primary key, so lookups use its index instead of scanning the table.
+     * Duplicate rows are dropped while copying into the new table.
+     */
+    private static void migrateToVersion2(Statement statement) throws SQLException {
+        long rowsBefore = count(statement, "VISITED_URLS");
+        statement.executeUpdate("CREATE TABLE VISITED_URLS_V2 " +
+                "(URL TEXT NOT NULL, " +
+                "IP TEXT NOT NULL, " +
+                "PRIMARY KEY (URL, IP))");
+        statement.executeUpdate("INSERT OR IGNORE INTO VISITED_URLS_V2 (URL, IP) SELECT URL, IP FROM VISITED_URLS");
+        statement.executeUpdate("DROP TABLE VISITED_URLS");
+        statement.executeUpdate("ALTER TABLE VISITED_URLS_V2 RENAME TO VISITED_URLS");
+        long duplicates = rowsBefore - count(statement, "VISITED_URLS");
+        logger.info("Removed " + duplicates + " duplicate rows from VISITED_URLS");
+    }
+
+    /**
+     * Replaces VISITED_URLS with SEEN_JOBS, which stores a 64-bit job key per job post instead of its url.
+     * Urls linking to the same job post become one row.
+     */
+    private static void migrateToVersion3(Statement statement) throws SQLException {
+        long urls = count(statement, "VISITED_URLS");
+        statement.executeUpdate("CREATE TABLE SEEN_JOBS " +
+                "(JOB_KEY INTEGER NOT NULL, " +
+                "IP TEXT NOT NULL, " +
+                "PRIMARY KEY (JOB_KEY, IP))");
+
+        // The job keys are computed here, as SQLite cannot extract the ids of the job posts
+        Connection currentConnection = statement.getConnection();
+        try (Statement selectStatement = currentConnection.createStatement();
+             ResultSet resultSet = selectStatement.executeQuery("SELECT URL, IP FROM VISITED_URLS");
+             PreparedStatement insertStatement = currentConnection.prepareStatement(
+                     "INSERT OR IGNORE INTO SEEN_JOBS (JOB_KEY, IP) VALUES (?, ?)")) {
+            int batched = 0;
+            while (resultSet.next()) {
+                insertStatement.setLong(1, JobKeys.of(resultSet.getString(1)));
+                insertStatement.setString(2, resultSet.getString(2));
+                insertStatement.addBatch();
+                if (++batched % MIGRATION_BATCH_SIZE == 0) {
+                    insertStatement.executeBatch();
+                }
+            }
+            insertStatement.executeBatch();
+        }
+
+        statement.executeUpdate("DROP TABLE VISITED_URLS");
+        logger.info("Moved " + urls + " urls from VISITED_URLS into " + count(statement, "SEEN_JOBS") + " job keys");
+    }
+
+    /**
+     * Gives each job key an expiry, so rows can be purged once their job post is gone.
+     * The deadlines of the rows already stored are unknown, so they are kept for the default time from now.
+     */
+    private static void migrateToVersion4(Statement statement) throws SQLException {
+        statement.executeUpdate("ALTER TABLE SEEN_JOBS ADD COLUMN EXPIRES_AT INTEGER NOT NULL DEFAULT 0");
+        statement.executeUpdate("UPDATE SEEN_JOBS SET EXPIRES_AT = " + expiresAt(null));
+        statement.executeUpdate("CREATE INDEX SEEN_JOBS_BY_EXPIRY ON SEEN_JOBS (EXPIRES_AT)");
+    }
+
+    /**
+     * Stores a digest of the content of each job post and when it is due for a revisit,
+     * so job posts can be sent again when they change. Rows stored before have neither, and are not revisited.
+     */
+    private static void migrateToVersion5(Statement statement) throws SQLException {
+        statement.executeUpdate("ALTER TABLE SEEN_JOBS ADD COLUMN DIGEST INTEGER");
+        statement.executeUpdate("ALTER TABLE SEEN_JOBS ADD COLUMN REVISIT_AT INTEGER");
+    }
+
+    /**
+     * Stores the SimHash fingerprints of the job posts sent, to find the same job posted on another site.
+     */
+    private static void migrateToVersion6(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE TABLE JOB_FINGERPRINTS " +
+                "(IP TEXT NOT NULL, " +
+                "JOB_KEY TEXT NOT NULL, " +
+                "SIMHASH INTEGER NOT NULL, " +
+                "EXPIRES_AT INTEGER NOT NULL, " +
+                "PRIMARY KEY (IP, JOB_KEY)) WITHOUT ROWID");
+        statement.executeUpdate("CREATE INDEX JOB_FINGERPRINTS_BY_EXPIRY ON JOB_FINGERPRINTS (EXPIRES_AT)");
+    }
+
+    /**
+     * Moves the ip and port of each row into TARGETS, so rows store a small id instead of repeating the string.
+     * The tables are keyed by target first and stored without rowid, so the rows of a target are next to each other
+     * and a lookup by target and job key reads only the primary key. A dropped target keeps its id with no ip,
+     * and AUTOINCREMENT keeps ids from being reused while its rows are removed.
+     */
+    private static void migrateToVersion7(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE TABLE TARGETS " +
+                "(ID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "IP TEXT UNIQUE)");
+        statement.executeUpdate("INSERT INTO TARGETS (IP) SELECT IP FROM SEEN_JOBS UNION SELECT IP FROM JOB_FINGERPRINTS");
+
+        statement.executeUpdate("CREATE TABLE SEEN_JOBS_V7 " +
+                "(TARGET_ID INTEGER NOT NULL, " +
+                "JOB_KEY INTEGER NOT NULL, " +
+                "EXPIRES_AT INTEGER NOT NULL, " +
+                "DIGEST INTEGER, " +
+                "REVISIT_AT INTEGER, " +
+                "PRIMARY KEY (TARGET_ID, JOB_KEY)) WITHOUT ROWID");
+        statement.executeUpdate("INSERT INTO SEEN_JOBS_V7 (TARGET_ID, JOB_KEY, EXPIRES_AT, DIGEST, REVISIT_AT) " +
+                "SELECT TARGETS.ID, JOB_KEY, EXPIRES_AT, DIGEST, REVISIT_AT FROM SEEN_JOBS JOIN TARGETS ON TARGETS.IP = SEEN_JOBS.IP");
+        statement.executeUpdate("DROP TABLE SEEN_JOBS");
+        statement.executeUpdate("ALTER TABLE SEEN_JOBS_V7 RENAME TO SEEN_JOBS");
+        statement.executeUpdate("CREATE INDEX SEEN_JOBS_BY_EXPIRY ON SEEN_JOBS (EXPIRES_AT)");
+
+        statement.executeUpdate("CREATE TABLE JOB_FINGERPRINTS_V7 " +
+                "(TARGET_ID INTEGER NOT NULL, " +
+                "JOB_KEY TEXT NOT NULL, " +
+                "SIMHASH INTEGER NOT NULL, " +
+                "EXPIRES_AT INTEGER NOT NULL, " +
+                "PRIMARY KEY (TARGET_ID, JOB_KEY)) WITHOUT ROWID");
+        statement.executeUpdate("INSERT INTO JOB_FINGERPRINTS_V7 (TARGET_ID, JOB_KEY, SIMHASH, EXPIRES_AT) " +
+                "SELECT TARGETS.ID, JOB_KEY, SIMHASH, EXPIRES_AT FROM JOB_FINGERPRINTS JOIN TARGETS ON TARGETS.IP = JOB_FINGERPRINTS.IP");
+        statement.executeUpdate("DROP TABLE JOB_FINGERPRINTS");
+        statement.executeUpdate("ALTER TABLE JOB_FINGERPRINTS_V7 RENAME TO JOB_FINGERPRINTS");
+        statement.executeUpdate("CREATE INDEX JOB_FINGERPRINTS_BY_EXPIRY ON JOB_FINGERPRINTS (EXPIRES_AT)");
+
+        logger.info("Moved the rows of " + count(statement, "TARGETS") + " targets into TARGETS");
+    }
+
+    /**
+     * Stores the website of each job post next to its fingerprint, as the source cannot be read from
+     * the job key of a job post whose id could not be found, which is its url.
+     */
+    private static void migrateToVersion8(Statement statement) throws SQLException {
+        statement.executeUpdate("ALTER TABLE JOB_FINGERPRINTS ADD COLUMN SOURCE TEXT NOT NULL DEFAULT ''");
+
+        // The sources are computed here, as SQLite cannot parse the urls
+        Connection currentConnection = statement.getConnection();
+        try (Statement selectStatement = currentConnection.createStatement();
+             ResultSet resultSet = selectStatement.executeQuery("SELECT TARGET_ID, JOB_KEY FROM JOB_FINGERPRINTS");
+             PreparedStatement updateStatement = currentConnection.prepareStatement(
+                     "UPDATE JOB_FINGERPRINTS SET SOURCE = ? WHERE TARGET_ID = ? AND JOB_KEY = ?")) {
+            int batched = 0;
+            while (resultSet.next()) {
+                String jobKey = resultSet.getString(2);
+                int separator = jobKey.indexOf(':');
+                boolean isUrl = jobKey.contains("://") || separator < 0;
+                updateStatement.setString(1, isUrl ? JobSource.sourceOf(jobKey) : jobKey.substring(0, separator));
+                updateStatement.setLong(2, resultSet.getLong(1));
+                updateStatement.setString(3, jobKey);
+                updateStatement.addBatch();
+                if (++batched % MIGRATION_BATCH_SIZE == 0) {
+                    updateStatement.executeBatch();
+                }
+            }
+            updateStatement.executeBatch();
+        }
+    }
+
+    private static long count(Statement statement, String table) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * An upgrade of the schema from the version before it.
+     */
+    @FunctionalInterface
+    private interface Migration {
+        void migrate(Statement statement) throws SQLException;
+    }
 }
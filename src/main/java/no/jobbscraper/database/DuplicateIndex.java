@@ -0,0 +1,245 @@
+package no.jobbscraper.database;
+
+import no.jobbscraper.jobpost.JobPost;
+import no.jobbscraper.url.JobSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds job posts that were sent before from another site, by the {@link SimHash} fingerprints of the job posts sent.
+ * The fingerprints are stored in the database, and kept in memory per ip in eight tables keyed by 8 bits each.
+ * Two fingerprints at most {@value #MAX_DISTANCE} bits apart agree on at least one of the eight 8-bit bands,
+ * so only the fingerprints sharing a band with the job post have to be compared.
+ * Only job posts from different sites count as duplicates, as a site may list the same job once per location.
+ */
+final class DuplicateIndex {
+
+    private static final Logger logger = Logger.getLogger(DuplicateIndex.class.getName());
+    static final int MAX_DISTANCE = 7;
+    private static final int BANDS = MAX_DISTANCE + 1;
+    private static final int BAND_BITS = Long.SIZE / BANDS;
+    // The fingerprints of each ip by band, loaded from the database on first use
+    private final Map<String, Map<Integer, List<Fingerprint>>> bandsPerIp = new HashMap<>();
+
+    /**
+     * The fingerprint of a job post sent before.
+     *
+     * @param jobKey    the source and id of the job post, see {@link JobSource#keyOf(String)}
+     * @param source    the website of the job post, see {@link JobSource#sourceOf(String)}
+     * @param simHash   the fingerprint of the job post
+     */
+    private record Fingerprint(String jobKey, String source, long simHash) {
+
+        static Fingerprint of(JobPost jobPost) {
+            return new Fingerprint(JobSource.keyOf(jobPost.url()), JobSource.sourceOf(jobPost.url()), SimHash.of(jobPost));
+        }
+    }
+
+    /**
+     * Finds the job posts that look like job posts sent before from another site, or earlier in the list.
+     *
+     * @param jobPosts  The job posts about to be sent.
+     * @param fullIp    The ip and port of the REST API the job posts are sent to.
+     * @return          The job key of the job post sent before, by the url of each duplicate.
+     */
+    Map<String, String> findOriginals(List<JobPost> jobPosts, String fullIp) {
+        Database.lock.lock();
+        try {
+            Map<Integer, List<Fingerprint>> bands = getBands(fullIp);
+            List<Fingerprint> earlierInList = new ArrayList<>();
+            Map<String, String> originals = new HashMap<>();
+            for (JobPost jobPost : jobPosts) {
+                Fingerprint fingerprint = Fingerprint.of(jobPost);
+                if (fingerprint.simHash() == 0) {
+                    continue;
+                }
+
+                Fingerprint original = findOriginal(fingerprint, bands, earlierInList);
+                if (Objects.nonNull(original)) {
+                    originals.put(jobPost.url(), original.jobKey());
+                } else {
+                    earlierInList.add(fingerprint);
+                }
+            }
+            return originals;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when loading job post fingerprints & " + fullIp, e.getMessage());
+            return Map.of();
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the fingerprints of job posts that were sent, in one transaction.
+     * Each fingerprint is kept until the url of its job post expires, see {@link Database#expiresAt(java.time.LocalDate)}.
+     *
+     * @param jobPosts  The job posts that were sent.
+     * @param fullIp    The ip and port of the REST API the job posts were sent to.
+     */
+    void add(List<JobPost> jobPosts, String fullIp) {
+        if (jobPosts.isEmpty()) {
+            return;
+        }
+
+        Database.lock.lock();
+        try {
+            Connection currentConnection = Database.getConnection();
+            PreparedStatement preparedStatement = Database.prepare(
+                    "INSERT OR REPLACE INTO JOB_FINGERPRINTS (TARGET_ID, JOB_KEY, SOURCE, SIMHASH, EXPIRES_AT) VALUES (?, ?, ?, ?, ?)");
+            long targetId = Database.targetId(fullIp);
+            List<Fingerprint> fingerprints = new ArrayList<>();
+            currentConnection.setAutoCommit(false);
+            try {
+                for (JobPost jobPost : jobPosts) {
+                    Fingerprint fingerprint = Fingerprint.of(jobPost);
+                    fingerprints.add(fingerprint);
+                    preparedStatement.setLong(1, targetId);
+                    preparedStatement.setString(2, fingerprint.jobKey());
+                    preparedStatement.setString(3, fingerprint.source());
+                    preparedStatement.setLong(4, fingerprint.simHash());
+                    preparedStatement.setLong(5, Database.expiresAt(jobPost.deadline()));
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                currentConnection.commit();
+            } catch (SQLException e) {
+                preparedStatement.clearBatch();
+                currentConnection.rollback();
+                throw e;
+            } finally {
+                currentConnection.setAutoCommit(true);
+            }
+
+            Map<Integer, List<Fingerprint>> bands = bandsPerIp.get(fullIp);
+            if (Objects.nonNull(bands)) {
+                fingerprints.forEach(fingerprint -> addToBands(bands, fingerprint));
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when storing " + jobPosts.size() + " job post fingerprints & " + fullIp,
+                    e.getMessage());
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes at most maxRows fingerprints that expired before the given time.
+     * The fingerprints in memory are loaded again on next use if any were deleted.
+     *
+     * @param now       The time in epoch seconds.
+     * @param maxRows   The most fingerprints to delete.
+     * @return          The number of fingerprints deleted.
+     */
+    int purgeExpired(long now, int maxRows) {
+        Database.lock.lock();
+        try {
+            PreparedStatement preparedStatement = Database.prepare("DELETE FROM JOB_FINGERPRINTS WHERE (TARGET_ID, JOB_KEY) IN " +
+                    "(SELECT TARGET_ID, JOB_KEY FROM JOB_FINGERPRINTS WHERE EXPIRES_AT < ? LIMIT ?)");
+            preparedStatement.setLong(1, now);
+            preparedStatement.setInt(2, maxRows);
+            int deleted = preparedStatement.executeUpdate();
+            if (deleted > 0) {
+                bandsPerIp.clear();
+            }
+            return deleted;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when purging expired job post fingerprints", e.getMessage());
+            return 0;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the fingerprints of the ip kept in memory, leaving the ones of other ips.
+     *
+     * @param fullIp    The ip and port of the REST API.
+     */
+    void forget(String fullIp) {
+        Database.lock.lock();
+        try {
+            bandsPerIp.remove(fullIp);
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the fingerprints kept in memory.
+     */
+    void clear() {
+        Database.lock.lock();
+        try {
+            bandsPerIp.clear();
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the fingerprint of another site closest to the given one, if within {@value #MAX_DISTANCE} bits.
+     */
+    private static Fingerprint findOriginal(Fingerprint fingerprint, Map<Integer, List<Fingerprint>> bands,
+                                            List<Fingerprint> earlierInList) {
+        List<Fingerprint> candidates = new ArrayList<>(earlierInList);
+        for (int band = 0; band < BANDS; band++) {
+            candidates.addAll(bands.getOrDefault(bandKey(fingerprint.simHash(), band), List.of()));
+        }
+
+        Fingerprint original = null;
+        int originalDistance = MAX_DISTANCE + 1;
+        for (Fingerprint candidate : candidates) {
+            int distance = SimHash.distance(fingerprint.simHash(), candidate.simHash());
+            if (distance < originalDistance && !candidate.source().equals(fingerprint.source())) {
+                original = candidate;
+                originalDistance = distance;
+            }
+        }
+        return original;
+    }
+
+    /**
+     * Returns the fingerprints of the ip by band. Must be called while holding the lock.
+     */
+    private Map<Integer, List<Fingerprint>> getBands(String fullIp) throws SQLException {
+        Map<Integer, List<Fingerprint>> bands = bandsPerIp.get(fullIp);
+        if (Objects.nonNull(bands)) {
+            return bands;
+        }
+
+        bands = new HashMap<>();
+        PreparedStatement preparedStatement = Database.prepare("SELECT JOB_KEY, SOURCE, SIMHASH FROM JOB_FINGERPRINTS WHERE TARGET_ID = ?");
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                addToBands(bands, new Fingerprint(resultSet.getString(1), resultSet.getString(2), resultSet.getLong(3)));
+            }
+        }
+        bandsPerIp.put(fullIp, bands);
+        return bands;
+    }
+
+    private static void addToBands(Map<Integer, List<Fingerprint>> bands, Fingerprint fingerprint) {
+        for (int band = 0; band < BANDS; band++) {
+            bands.computeIfAbsent(bandKey(fingerprint.simHash(), band), bandKey -> new ArrayList<>()).add(fingerprint);
+        }
+    }
+
+    /**
+     * Returns the number of the band followed by the bits of the fingerprint in it.
+     */
+    private static int bandKey(long simHash, int band) {
+        return band << BAND_BITS | (int) (simHash >>> band * BAND_BITS & (1L << BAND_BITS) - 1);
+    }
+}
@@ -0,0 +1,94 @@
+package no.jobbscraper.database;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically removes expired urls from the seen url store, expired job post fingerprints and the rows of
+ * dropped targets, and gives the freed pages back to the file system.
+ * Each run works in small steps that each hold the database briefly, so the scrapers are never blocked for long.
+ * The exception is the first run on a database from before incremental vacuum, which rewrites the file once to switch it over.
+ */
+public final class ExpiryPurger implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ExpiryPurger.class.getName());
+    private static final int ROWS_PER_STEP = 500;
+    private static final int PAGES_PER_STEP = 256;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    /**
+     * Constructs an ExpiryPurger that runs right away, and then once every interval.
+     *
+     * @param interval the time between the start of two runs
+     */
+    public ExpiryPurger(Duration interval) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("seen-url-purger").daemon().factory());
+        scheduler.scheduleAtFixedRate(this::purge, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes every expired url and fingerprint and the rows of dropped targets, then reclaims the freed pages,
+     * a step at a time.
+     */
+    void purge() {
+        try {
+            long rowsRemoved = 0;
+            int removed;
+            do {
+                removed = Database.purgeExpired(ROWS_PER_STEP);
+                rowsRemoved += removed;
+            } while (removed == ROWS_PER_STEP && !closed);
+
+            long fingerprintsRemoved = 0;
+            do {
+                removed = Database.purgeExpiredFingerprints(ROWS_PER_STEP);
+                fingerprintsRemoved += removed;
+            } while (removed == ROWS_PER_STEP && !closed);
+
+            long targetRowsRemoved = 0;
+            do {
+                removed = Database.purgeDroppedTargets(ROWS_PER_STEP);
+                targetRowsRemoved += removed;
+            } while (removed == ROWS_PER_STEP && !closed);
+
+            // A database from before incremental vacuum is rewritten once, after the purges made it smaller
+            long bytesReclaimed = 0;
+            if (!closed && Database.enableIncrementalVacuum()) {
+                long reclaimed;
+                do {
+                    reclaimed = Database.reclaimFreePages(PAGES_PER_STEP);
+                    bytesReclaimed += reclaimed;
+                } while (reclaimed > 0 && !closed);
+            }
+
+            logger.info(String.format("Purged %s expired urls, %s expired fingerprints and %s rows of dropped targets, " +
+                    "and reclaimed %s KB", rowsRemoved, fingerprintsRemoved, targetRowsRemoved, bytesReclaimed / 1024));
+        } catch (RuntimeException e) {
+            // A failed run must not cancel the next ones
+            logger.log(Level.SEVERE, "Error occurred when purging expired urls", e);
+        }
+    }
+
+    /**
+     * Stops the purges, waiting for a running step to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
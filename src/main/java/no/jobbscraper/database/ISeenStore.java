@@ -0,0 +1,97 @@
+package no.jobbscraper.database;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores which urls have been scraped and sent to a REST API, so they are not scraped again.
+ * Urls are stored per ip, as the same url may be sent to several REST APIs.
+ * Urls linking to the same job post are one entry, see {@link no.jobbscraper.url.JobSource#keyOf(String)}.
+ * Implementations must be safe to use from several threads at once.
+ */
+public interface ISeenStore extends AutoCloseable {
+
+    /**
+     * Checks if the url has been stored for the ip.
+     *
+     * @param url       The url to check.
+     * @param fullIp    The ip and port of the REST API the url is sent to.
+     * @return          true if the url has been stored, false if not or if the lookup failed.
+     */
+    boolean exists(String url, String fullIp);
+
+    /**
+     * Finds the urls that have not been stored for the ip.
+     *
+     * @param urls      The urls to check.
+     * @param fullIp    The ip and port of the REST API the urls are sent to.
+     * @return          The urls that have not been stored, in the order they were given.
+     *                  If the lookup fails, every url is returned as unseen.
+     */
+    List<String> filterUnseen(List<String> urls, String fullIp);
+
+    /**
+     * Stores the url for the ip, until the default time to keep urls without a deadline has passed.
+     * Storing a url that is already stored does nothing.
+     *
+     * @param url       The url to store.
+     * @param fullIp    The ip and port of the REST API the url was sent to.
+     */
+    void insertUrl(String url, String fullIp);
+
+    /**
+     * Stores the urls for the ip, in one write where the store supports it.
+     * Each url is kept until it expires, see {@link Database#expiresAt(java.time.LocalDate)}.
+     *
+     * @param seenUrls  The urls to store, with the deadlines of their job posts.
+     * @param fullIp    The ip and port of the REST API the urls were sent to.
+     * @return          The urls that were already stored, in the order they were given.
+     */
+    List<String> insertUrls(List<SeenUrl> seenUrls, String fullIp);
+
+    /**
+     * Finds the urls among the given ones that are stored with a content digest and are due for a revisit,
+     * so their job posts can be scraped again and sent if they changed.
+     *
+     * @param urls      The urls to check, usually ones already known to be stored.
+     * @param fullIp    The ip and port of the REST API the urls were sent to.
+     * @param now       The time in epoch seconds to compare the revisit time of the urls against.
+     * @return          The stored digest of each url due for a revisit. Empty if the store keeps no digests.
+     */
+    Map<String, Long> findDueForRevisit(List<String> urls, String fullIp, long now);
+
+    /**
+     * Replaces the digest, expiry and revisit time of urls that are already stored, after a revisit.
+     * Urls that are not stored are left out.
+     *
+     * @param seenUrls  The revisited urls, with the deadlines and digests of their job posts as scraped now.
+     * @param fullIp    The ip and port of the REST API the urls were sent to.
+     */
+    void updateUrls(List<SeenUrl> seenUrls, String fullIp);
+
+    /**
+     * Removes urls that expired before the given time, so the store does not grow forever.
+     * A removed url is unseen again.
+     *
+     * @param now       The time in epoch seconds to compare the expiry of the urls against.
+     * @param maxRows   The most urls to remove in this call, so the store is only held briefly.
+     * @return          The number of urls removed. Less than maxRows when no expired urls are left.
+     */
+    int purgeExpired(long now, int maxRows);
+
+    /**
+     * Checks if calls to the store run the database driver, which pins a virtual thread to its carrier while it runs.
+     * Calls from virtual threads to a store that does are run on the database thread instead.
+     *
+     * @return true if calls to the store may call into JDBC, which is assumed unless a store says otherwise.
+     */
+    default boolean usesJdbc() {
+        return true;
+    }
+
+    /**
+     * Releases the resources of the store. The store must not be used afterwards.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,48 @@
+package no.jobbscraper.database;
+
+import no.jobbscraper.url.JobSource;
+
+/**
+ * Hashes the urls of job posts into the 64-bit job keys the seen url stores keep instead of the urls.
+ * Urls linking to the same job post get the same key, see {@link JobSource#keyOf(String)}.
+ */
+final class JobKeys {
+
+    private JobKeys() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the job key of the url, a hash of the source and the id of its job post.
+     *
+     * @param url   The url of a job post.
+     * @return      The job key.
+     */
+    static long of(String url) {
+        return hash(JobSource.keyOf(url));
+    }
+
+    /**
+     * FNV-1a over the characters of the string, finished with a 64-bit mix so all bits depend on every character.
+     */
+    static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of MurmurHash3. It is a bijection, so distinct values stay distinct.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,583 @@
+package no.jobbscraper.database;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the job keys of the scraped urls as 64-bit fingerprints in an open-addressing hash table, kept in a memory-mapped file.
+ * Lookups and inserts read and compare-and-set the slots of the mapped file directly,
+ * so they never call into JDBC and never allocate, and only wait for each other while the table is resized.
+ * The operating system writes the changed pages back to the file, so the urls survive a crash of the application.
+ * <p>
+ * A fingerprint mixes the ip into the job key, so two job posts share a fingerprint with a probability of
+ * about n / 2^64 for n stored job posts, in which case a new job post is wrongly taken as scraped.
+ * The first time the file is created, the job keys already stored in the database are copied into it.
+ * Urls stored here are not written to the database, unless the table is full at its largest size.
+ * From then on the urls that do not fit are stored in the database, which is looked up too for as long as the file exists.
+ * <p>
+ * Each slot has the day its url expires next to it. Open addressing cannot remove single slots while
+ * others are probing, so expired urls are purged by rebuilding the table without them.
+ */
+public final class MappedSeenStore implements ISeenStore {
+
+    private static final Logger logger = Logger.getLogger(MappedSeenStore.class.getName());
+    // "JOBSEEN3", marks the file as a seen url table of this layout
+    private static final long MAGIC = 0x4A4F425345454E33L;
+    // "JOBSEEN1" held fingerprints of raw urls, "JOBSEEN2" had no expiries
+    private static final Set<Long> EARLIER_MAGICS = Set.of(0x4A4F425345454E31L, 0x4A4F425345454E32L);
+    // Magic and capacity, padded so the slots stay aligned for atomic access
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    // Set once urls were stored in the database because the table was full
+    private static final int OVERFLOWED_OFFSET = 16;
+    // 12 MB of slots and expiries
+    static final int INITIAL_CAPACITY = 1 << 20;
+    // The largest power of two of slots that can be mapped in one buffer
+    private static final int MAX_CAPACITY = 1 << 27;
+    // A fingerprint and the epoch day it expires
+    private static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES;
+    private static final long SECONDS_PER_DAY = 86_400;
+    static final double MAX_LOAD_FACTOR = 0.7;
+    private static final long EMPTY = 0;
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle EXPIRY = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final double overflowFilterFalsePositiveRate;
+    // The number of slots the table may grow to before urls are stored in the database
+    private final int maxCapacity;
+    private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    // Guards creating the overflow store, never held together with the resize lock
+    private final ReentrantLock overflowLock = new ReentrantLock();
+    private final AtomicLong size = new AtomicLong();
+    private volatile Table table;
+    // The database, storing the urls that did not fit in the table, or null while every url fits
+    private volatile ISeenStore overflow;
+
+    private MappedSeenStore(Path path, Table table, long size, double overflowFilterFalsePositiveRate, int maxCapacity) {
+        this.path = path;
+        this.table = table;
+        this.size.set(size);
+        this.overflowFilterFalsePositiveRate = overflowFilterFalsePositiveRate;
+        this.maxCapacity = maxCapacity;
+        if (table.hasOverflowed()) {
+            this.overflow = new SqliteSeenStore(overflowFilterFalsePositiveRate);
+        }
+    }
+
+    /**
+     * Opens the store in the given file. If the file does not exist,
+     * it is created with the urls stored in the database, which must have been set up first.
+     *
+     * @param path                      The file of the hash table.
+     * @param falsePositiveRate         The false positive rate of the seen url filters of the database,
+     *                                  used once urls no longer fit in the table.
+     * @return                          The opened store.
+     * @throws IOException if the file could not be created or mapped, or is not a seen url table
+     */
+    public static MappedSeenStore open(Path path, double falsePositiveRate) throws IOException {
+        return open(path, falsePositiveRate, MAX_CAPACITY);
+    }
+
+    /**
+     * Opens the store in the given file, letting the table grow to at most the given number of slots.
+     *
+     * @see #open(Path, double)
+     */
+    static MappedSeenStore open(Path path, double falsePositiveRate, int maxCapacity) throws IOException {
+        if (Long.bitCount(maxCapacity) != 1 || maxCapacity < INITIAL_CAPACITY || maxCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The largest seen url table must be a power of two between "
+                    + INITIAL_CAPACITY + " and " + MAX_CAPACITY + " slots, got " + maxCapacity);
+        }
+        if (Files.exists(path) && EARLIER_MAGICS.contains(Table.readMagic(path))) {
+            // The table lacks what this layout needs, so it is built again from the database
+            logger.warning("Replacing seen url table " + path + " of an earlier layout, urls only stored in it are scraped again");
+            Files.delete(path);
+        }
+        if (Files.exists(path)) {
+            Table table = Table.open(path);
+            long size = table.countUsedSlots();
+            logger.info(String.format("Opened seen url table %s with %s urls in %s slots", path, size, table.capacity));
+            return new MappedSeenStore(path, table, size, falsePositiveRate, maxCapacity);
+        }
+
+        // Built next to the file and moved in place, so a crash never leaves a half-imported table behind
+        long storedKeys;
+        try {
+            storedKeys = SqliteSeenStore.countStoredKeys();
+        } catch (SQLException e) {
+            throw new IOException("Could not count the job keys in the database", e);
+        }
+        Path temporaryPath = temporaryPathFor(path);
+        Table table = Table.create(temporaryPath, capacityFor(storedKeys, maxCapacity));
+        AtomicLong imported = new AtomicLong();
+        try {
+            SqliteSeenStore.forEachStoredKey(storedKey -> {
+                if (table.add(fingerprint(storedKey.jobKey(), storedKey.fullIp()), toEpochDay(storedKey.expiresAt()))) {
+                    imported.incrementAndGet();
+                }
+            });
+        } catch (SQLException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw new IOException("Could not copy the job keys from the database", e);
+        }
+        table.slots.force();
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info(String.format("Created seen url table %s with %s job keys from the database", path, imported.get()));
+        return new MappedSeenStore(path, table, imported.get(), falsePositiveRate, maxCapacity);
+    }
+
+    @Override
+    public boolean exists(String url, String fullIp) {
+        if (existsInTable(url, fullIp)) {
+            return true;
+        }
+        ISeenStore overflowStore = overflow;
+        return Objects.nonNull(overflowStore) && overflowStore.exists(url, fullIp);
+    }
+
+    @Override
+    public List<String> filterUnseen(List<String> urls, String fullIp) {
+        List<String> unseenUrls = urls.stream()
+                .filter(url -> !existsInTable(url, fullIp))
+                .toList();
+        ISeenStore overflowStore = overflow;
+        if (Objects.isNull(overflowStore) || unseenUrls.isEmpty()) {
+            return unseenUrls;
+        }
+        return overflowStore.filterUnseen(unseenUrls, fullIp);
+    }
+
+    @Override
+    public void insertUrl(String url, String fullIp) {
+        insertUrls(List.of(new SeenUrl(url, null, null)), fullIp);
+    }
+
+    /**
+     * Stores the urls in the table. Urls that do not fit, because the table is full at its largest size
+     * or could not be grown, are stored in the database instead.
+     * The conflicts in the database follow the ones in the table.
+     */
+    @Override
+    public List<String> insertUrls(List<SeenUrl> seenUrls, String fullIp) {
+        List<String> conflicts = new ArrayList<>();
+        List<SeenUrl> overflowedUrls = new ArrayList<>();
+        for (SeenUrl seenUrl : seenUrls) {
+            long fingerprint = fingerprint(JobKeys.of(seenUrl.url()), fullIp);
+            try {
+                if (isFull()) {
+                    if (existsInTable(seenUrl.url(), fullIp)) {
+                        conflicts.add(seenUrl.url());
+                    } else {
+                        overflowedUrls.add(seenUrl);
+                    }
+                } else if (!insert(fingerprint, toEpochDay(Database.expiresAt(seenUrl.deadline())))) {
+                    conflicts.add(seenUrl.url());
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.log(Level.SEVERE, "Could not insert " + seenUrl.url() + " & " + fullIp
+                        + " in seen url table " + path + ", storing it in the database", e.getMessage());
+                overflowedUrls.add(seenUrl);
+            }
+        }
+
+        if (!overflowedUrls.isEmpty()) {
+            conflicts.addAll(getOverflow().insertUrls(overflowedUrls, fullIp));
+        }
+        return conflicts;
+    }
+
+    /**
+     * The table is read and written directly, so JDBC is only called once urls no longer fit in it.
+     */
+    @Override
+    public boolean usesJdbc() {
+        return Objects.nonNull(overflow);
+    }
+
+    /**
+     * Only fingerprints are kept, not digests, so no url is ever due for a revisit.
+     */
+    @Override
+    public Map<String, Long> findDueForRevisit(List<String> urls, String fullIp, long now) {
+        return Map.of();
+    }
+
+    /**
+     * Only fingerprints are kept, so there is nothing to update.
+     */
+    @Override
+    public void updateUrls(List<SeenUrl> seenUrls, String fullIp) {
+    }
+
+    /**
+     * Rebuilds the table without the urls that expired before today, if there are any.
+     * The whole table is rebuilt at once, so maxRows is not used. Lookups and inserts wait for the rebuild,
+     * which reads the table once and takes milliseconds for a table of a million slots.
+     */
+    @Override
+    public int purgeExpired(long now, int maxRows) {
+        int purged = purgeExpiredFromTable(now);
+        ISeenStore overflowStore = overflow;
+        if (Objects.nonNull(overflowStore)) {
+            purged += overflowStore.purgeExpired(now, maxRows);
+        }
+        return purged;
+    }
+
+    private int purgeExpiredFromTable(long now) {
+        int today = toEpochDay(now);
+        resizeLock.writeLock().lock();
+        try {
+            Table currentTable = table;
+            long expired = currentTable.countExpiredSlots(today);
+            if (expired == 0) {
+                return 0;
+            }
+
+            long fileSizeBefore = Files.size(path);
+            long remaining = size.get() - expired;
+            rebuild(currentTable, Math.min(currentTable.capacity, capacityFor(remaining, maxCapacity)), today);
+            size.set(remaining);
+            logger.info(String.format("Removed %s expired urls from seen url table %s, which shrank by %s KB",
+                    expired, path, (fileSizeBefore - Files.size(path)) / 1024));
+            return (int) Math.min(Integer.MAX_VALUE, expired);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error occurred when purging expired urls from " + path, e.getMessage());
+            return 0;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the changed pages to the file.
+     */
+    @Override
+    public void close() {
+        ISeenStore overflowStore = overflow;
+        if (Objects.nonNull(overflowStore)) {
+            overflowStore.close();
+            overflow = null;
+        }
+        resizeLock.writeLock().lock();
+        try {
+            if (Objects.nonNull(table)) {
+                table.slots.force();
+                table = null;
+                logger.info("Closed seen url table " + path);
+            }
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private boolean existsInTable(String url, String fullIp) {
+        long fingerprint = fingerprint(JobKeys.of(url), fullIp);
+        resizeLock.readLock().lock();
+        try {
+            return table.contains(fingerprint);
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the table is as full as it may get, at its largest size.
+     */
+    private boolean isFull() {
+        return table.capacity >= maxCapacity && size.get() >= table.capacity * MAX_LOAD_FACTOR;
+    }
+
+    /**
+     * Returns the store for the urls that do not fit in the table, creating it the first time.
+     * The table remembers that urls were stored in the database, so they are looked up there after a restart too.
+     */
+    private ISeenStore getOverflow() {
+        ISeenStore overflowStore = overflow;
+        if (Objects.nonNull(overflowStore)) {
+            return overflowStore;
+        }
+
+        overflowLock.lock();
+        try {
+            if (Objects.isNull(overflow)) {
+                resizeLock.writeLock().lock();
+                try {
+                    table.markOverflowed();
+                } finally {
+                    resizeLock.writeLock().unlock();
+                }
+                logger.warning("Seen url table " + path + " is full, storing the urls that do not fit in the database");
+                overflow = new SqliteSeenStore(overflowFilterFalsePositiveRate);
+            }
+            return overflow;
+        } finally {
+            overflowLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the fingerprint, growing the table first if it is too full.
+     *
+     * @return true if the fingerprint was added, false if it was already in the table
+     */
+    private boolean insert(long fingerprint, int expiryDay) throws IOException {
+        if (size.get() >= table.capacity * MAX_LOAD_FACTOR) {
+            resize();
+        }
+
+        resizeLock.readLock().lock();
+        try {
+            if (table.add(fingerprint, expiryDay)) {
+                size.incrementAndGet();
+                return true;
+            }
+            return false;
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rehashes every fingerprint into a table with twice the slots, and replaces the file with it.
+     */
+    private void resize() throws IOException {
+        resizeLock.writeLock().lock();
+        try {
+            Table currentTable = table;
+            // Another thread may have resized while this one waited for the lock
+            if (size.get() < currentTable.capacity * MAX_LOAD_FACTOR || currentTable.capacity >= maxCapacity) {
+                return;
+            }
+
+            rebuild(currentTable, currentTable.capacity * 2, Integer.MIN_VALUE);
+            logger.info(String.format("Resized seen url table %s to %s slots", path, table.capacity));
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rehashes the fingerprints expiring on or after the given day into a new table, and replaces the file with it.
+     * Must be called while holding the write lock.
+     */
+    private void rebuild(Table currentTable, int capacity, int keepFromDay) throws IOException {
+        Path temporaryPath = temporaryPathFor(path);
+        Table rebuiltTable = Table.create(temporaryPath, capacity);
+        if (currentTable.hasOverflowed()) {
+            rebuiltTable.markOverflowed();
+        }
+        for (int index = 0; index < currentTable.capacity; index++) {
+            long fingerprint = currentTable.get(index);
+            int expiryDay = currentTable.getExpiryDay(index);
+            if (fingerprint != EMPTY && expiryDay >= keepFromDay) {
+                rebuiltTable.add(fingerprint, expiryDay);
+            }
+        }
+        rebuiltTable.slots.force();
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        table = rebuiltTable;
+    }
+
+    /**
+     * Mixes the ip into the job key. For one ip distinct job keys give distinct fingerprints.
+     * Zero marks an empty slot, so it is never returned.
+     */
+    static long fingerprint(long jobKey, String fullIp) {
+        long fingerprint = JobKeys.mix(jobKey ^ JobKeys.hash(fullIp));
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+
+    /**
+     * Returns the smallest power of two of slots that holds the job keys at half load, and at least the initial capacity.
+     */
+    static int capacityFor(long jobKeys, int maxCapacity) {
+        long capacity = INITIAL_CAPACITY;
+        while (capacity < maxCapacity && capacity < jobKeys * 2) {
+            capacity <<= 1;
+        }
+        return (int) capacity;
+    }
+
+    private static int toEpochDay(long epochSecond) {
+        return (int) Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    }
+
+    private static Path temporaryPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * The slots of one mapped file. Slots are longs at 8-byte aligned offsets after the header,
+     * and are found by linear probing from the low bits of the fingerprint.
+     * The expiry days follow the slots, as ints in the same order.
+     */
+    private static final class Table {
+
+        private final MappedByteBuffer slots;
+        private final int capacity;
+
+        private Table(MappedByteBuffer slots, int capacity) {
+            this.slots = slots;
+            this.capacity = capacity;
+        }
+
+        static Table create(Path path, int capacity) throws IOException {
+            Files.deleteIfExists(path);
+            MappedByteBuffer slots = map(path, capacity);
+            slots.putLong(0, MAGIC);
+            slots.putLong(CAPACITY_OFFSET, capacity);
+            return new Table(slots, capacity);
+        }
+
+        static long readMagic(Path path) throws IOException {
+            if (Files.size(path) < Long.BYTES) {
+                return 0;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Long.BYTES);
+                return header.order(ByteOrder.LITTLE_ENDIAN).getLong(0);
+            }
+        }
+
+        static Table open(Path path) throws IOException {
+            long fileSize = Files.size(path);
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(path + " is not a seen url table");
+            }
+            MappedByteBuffer header;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            }
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            long capacity = header.getLong(CAPACITY_OFFSET);
+            if (header.getLong(0) != MAGIC || Long.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                    || fileSize != HEADER_BYTES + capacity * BYTES_PER_SLOT) {
+                throw new IOException(path + " is not a seen url table");
+            }
+            return new Table(map(path, (int) capacity), (int) capacity);
+        }
+
+        private static MappedByteBuffer map(Path path, int capacity) throws IOException {
+            // The mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * BYTES_PER_SLOT);
+                slots.order(ByteOrder.LITTLE_ENDIAN);
+                return slots;
+            }
+        }
+
+        boolean contains(long fingerprint) {
+            int mask = capacity - 1;
+            int index = (int) fingerprint & mask;
+            for (int probes = 0; probes < capacity; probes++) {
+                long slot = get(index);
+                if (slot == fingerprint) {
+                    return true;
+                }
+                if (slot == EMPTY) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * Adds the fingerprint to the first empty slot of its probe sequence.
+         * The expiry is written after the slot is taken, and is only read by purges, which hold the write lock.
+         *
+         * @return true if the fingerprint was added, false if it was already in the table
+         * @throws IllegalStateException if every slot is taken
+         */
+        boolean add(long fingerprint, int expiryDay) {
+            int mask = capacity - 1;
+            int index = (int) fingerprint & mask;
+            int probes = 0;
+            while (probes < capacity) {
+                int offset = offsetOf(index);
+                long slot = (long) SLOT.getVolatile(slots, offset);
+                if (slot == fingerprint) {
+                    return false;
+                }
+                if (slot == EMPTY) {
+                    if (SLOT.compareAndSet(slots, offset, EMPTY, fingerprint)) {
+                        EXPIRY.setVolatile(slots, expiryOffsetOf(index), expiryDay);
+                        return true;
+                    }
+                    // Another thread took the slot, so look at it again
+                    continue;
+                }
+                index = (index + 1) & mask;
+                probes++;
+            }
+            throw new IllegalStateException("The seen url table is full with " + capacity + " urls");
+        }
+
+        void markOverflowed() {
+            slots.putLong(OVERFLOWED_OFFSET, 1);
+            slots.force();
+        }
+
+        boolean hasOverflowed() {
+            return slots.getLong(OVERFLOWED_OFFSET) != 0;
+        }
+
+        long get(int index) {
+            return (long) SLOT.getVolatile(slots, offsetOf(index));
+        }
+
+        int getExpiryDay(int index) {
+            return (int) EXPIRY.getVolatile(slots, expiryOffsetOf(index));
+        }
+
+        long countExpiredSlots(int today) {
+            long expired = 0;
+            for (int index = 0; index < capacity; index++) {
+                if (get(index) != EMPTY && getExpiryDay(index) < today) {
+                    expired++;
+                }
+            }
+            return expired;
+        }
+
+        long countUsedSlots() {
+            long used = 0;
+            for (int index = 0; index < capacity; index++) {
+                if (get(index) != EMPTY) {
+                    used++;
+                }
+            }
+            return used;
+        }
+
+        private static int offsetOf(int index) {
+            return HEADER_BYTES + index * Long.BYTES;
+        }
+
+        private int expiryOffsetOf(int index) {
+            return HEADER_BYTES + capacity * Long.BYTES + index * Integer.BYTES;
+        }
+    }
+}
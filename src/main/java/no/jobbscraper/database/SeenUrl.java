@@ -0,0 +1,14 @@
+package no.jobbscraper.database;
+
+import java.time.LocalDate;
+
+/**
+ * A scraped url to store, with the deadline and the content digest of its job post.
+ * The url is kept until some days after the deadline, or for the default time if there is no deadline.
+ *
+ * @param url       the url of the job post
+ * @param deadline  the deadline of the job post, or null if it has none
+ * @param digest    the digest of the content of the job post, or null if unknown
+ */
+public record SeenUrl(String url, LocalDate deadline, Long digest) {
+}
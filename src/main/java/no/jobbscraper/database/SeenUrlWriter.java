@@ -0,0 +1,218 @@
+package no.jobbscraper.database;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes scraped urls to the seen url store on its own thread, so the scrapers do not wait for the disk.
+ * Queued writes are committed in groups, once enough urls are waiting or the group window has passed,
+ * so the scrapers no longer take turns at the write lock of the database for every list page.
+ * Urls waiting to be inserted count as seen, see {@link #filterNotPending(List, String)}.
+ */
+public final class SeenUrlWriter implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SeenUrlWriter.class.getName());
+    private static final int MAX_URLS_PER_GROUP = 1000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    private final BlockingQueue<Write> queue;
+    private final Duration groupWindow;
+    // The number of queued inserts of each job key, so a url queued twice stays pending until both are written
+    private final Map<PendingKey, Integer> pendingInserts;
+    private final AtomicInteger queuedUrls;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * A write waiting in the queue.
+     *
+     * @param seenUrls  the urls to write
+     * @param fullIp    the ip and port of the REST API the urls were sent to
+     * @param update    true if the urls are already stored and only updated
+     */
+    private record Write(List<SeenUrl> seenUrls, String fullIp, boolean update) {}
+
+    private record PendingKey(String fullIp, long jobKey) {}
+
+    /**
+     * Constructs a SeenUrlWriter and starts its thread.
+     *
+     * @param capacity      the most writes that can wait in the queue before the scrapers have to wait for it
+     * @param groupWindow   the longest a write waits for others to be committed together with
+     */
+    public SeenUrlWriter(int capacity, Duration groupWindow) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.groupWindow = groupWindow;
+        this.pendingInserts = new ConcurrentHashMap<>();
+        this.queuedUrls = new AtomicInteger();
+        this.thread = Thread.ofPlatform().name("seen-url-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Queues the urls to be inserted, waiting for room in the queue if it is full.
+     *
+     * @see ISeenStore#insertUrls(List, String)
+     */
+    public void insertUrls(List<SeenUrl> seenUrls, String fullIp) {
+        if (seenUrls.isEmpty()) {
+            return;
+        }
+        seenUrls.forEach(seenUrl -> pendingInserts.merge(pendingKey(seenUrl.url(), fullIp), 1, Integer::sum));
+        enqueue(new Write(List.copyOf(seenUrls), fullIp, false));
+    }
+
+    /**
+     * Queues the urls to be updated, waiting for room in the queue if it is full.
+     *
+     * @see ISeenStore#updateUrls(List, String)
+     */
+    public void updateUrls(List<SeenUrl> seenUrls, String fullIp) {
+        if (seenUrls.isEmpty()) {
+            return;
+        }
+        enqueue(new Write(List.copyOf(seenUrls), fullIp, true));
+    }
+
+    /**
+     * Leaves out the urls waiting to be inserted for the ip.
+     * Must be called before the store is checked, as a url stops being pending once its write is committed.
+     *
+     * @param urls      The urls to check.
+     * @param fullIp    The ip and port of the REST API the urls are sent to.
+     * @return          The urls that are not waiting to be inserted, in the order they were given.
+     */
+    public List<String> filterNotPending(List<String> urls, String fullIp) {
+        if (pendingInserts.isEmpty()) {
+            return urls;
+        }
+        return urls.stream()
+                .filter(url -> !pendingInserts.containsKey(pendingKey(url, fullIp)))
+                .toList();
+    }
+
+    /**
+     * Returns the number of urls waiting in the queue, including the group being committed.
+     *
+     * @return the depth of the queue in urls
+     */
+    public int getQueueDepth() {
+        return queuedUrls.get();
+    }
+
+    private void enqueue(Write write) {
+        queuedUrls.addAndGet(write.seenUrls().size());
+        if (closed) {
+            commit(List.of(write));
+            return;
+        }
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            // The scraper is stopping, so the urls it sent are written right away instead of being lost
+            Thread.currentThread().interrupt();
+            commit(List.of(write));
+        }
+    }
+
+    /**
+     * Commits groups of writes until closed and the queue is empty.
+     */
+    private void run() {
+        List<Write> group = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                int urls = first.seenUrls().size();
+                long deadline = System.nanoTime() + groupWindow.toNanos();
+                while (urls < MAX_URLS_PER_GROUP) {
+                    Write next = closed
+                            ? queue.poll()
+                            : queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    urls += next.seenUrls().size();
+                }
+            } catch (InterruptedException e) {
+                // Only close stops the writer, what was taken is still committed below
+            }
+            commit(group);
+            group.clear();
+        }
+    }
+
+    /**
+     * Commits the writes with one call to the store per ip, the inserts before the updates.
+     */
+    private void commit(List<Write> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        Map<String, List<SeenUrl>> insertsPerIp = new LinkedHashMap<>();
+        Map<String, List<SeenUrl>> updatesPerIp = new LinkedHashMap<>();
+        for (Write write : writes) {
+            (write.update() ? updatesPerIp : insertsPerIp)
+                    .computeIfAbsent(write.fullIp(), fullIp -> new ArrayList<>())
+                    .addAll(write.seenUrls());
+        }
+
+        try {
+            insertsPerIp.forEach((fullIp, seenUrls) -> {
+                List<String> conflicts = Database.insertUrls(seenUrls, fullIp);
+                if (!conflicts.isEmpty()) {
+                    logger.warning(conflicts.size() + " urls were already marked as scraped: " + conflicts);
+                }
+            });
+            updatesPerIp.forEach((fullIp, seenUrls) -> Database.updateUrls(seenUrls, fullIp));
+        } catch (RuntimeException e) {
+            // A failed group must not stop the writer
+            logger.log(Level.SEVERE, "Error occurred when writing scraped urls", e);
+        } finally {
+            insertsPerIp.forEach((fullIp, seenUrls) -> seenUrls.forEach(seenUrl -> pendingInserts.computeIfPresent(
+                    pendingKey(seenUrl.url(), fullIp), (pendingKey, count) -> count == 1 ? null : count - 1)));
+            writes.forEach(write -> queuedUrls.addAndGet(-write.seenUrls().size()));
+        }
+    }
+
+    private static PendingKey pendingKey(String url, String fullIp) {
+        return new PendingKey(fullIp, JobKeys.of(url));
+    }
+
+    /**
+     * Writes everything still in the queue, then stops the thread.
+     * Urls queued afterwards are written right away.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // Wakes the thread if it is waiting out the group window, so the queue is written without waiting for it
+        thread.interrupt();
+        try {
+            thread.join(Duration.ofSeconds(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warning("Gave up waiting for " + getQueueDepth() + " scraped urls to be written");
+            return;
+        }
+        // Writes queued while the thread was stopping
+        List<Write> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        commit(remaining);
+    }
+}
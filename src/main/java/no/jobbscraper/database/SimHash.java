@@ -0,0 +1,84 @@
+package no.jobbscraper.database;
+
+import no.jobbscraper.jobpost.JobPost;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Computes 64-bit SimHash fingerprints of job posts, which differ in few bits for job posts with mostly the same text.
+ * The same job posted on several sites gets fingerprints within a small Hamming distance of each other,
+ * even though each site formats the description and the company name a little differently.
+ */
+final class SimHash {
+
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Left out of company names, as the sites do not agree on whether to show them
+    private static final Set<String> COMPANY_SUFFIXES = Set.of("as", "asa", "ab", "ltd", "kommune", "fylkeskommune");
+    private static final int SHINGLE_SIZE = 3;
+    // The title and the company are few words next to a long description, so each of their words counts more
+    private static final int TITLE_WEIGHT = 4;
+    private static final int COMPANY_WEIGHT = 4;
+
+    private SimHash() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the fingerprint of the normalised title, company name and description of the job post.
+     *
+     * @param jobPost   The job post.
+     * @return          The fingerprint, 0 if the job post has no text.
+     */
+    static long of(JobPost jobPost) {
+        int[] weights = new int[Long.SIZE];
+        words(jobPost.title()).forEach(word -> add(weights, "t:" + word, TITLE_WEIGHT));
+        words(jobPost.companyName()).stream()
+                .filter(word -> !COMPANY_SUFFIXES.contains(word))
+                .forEach(word -> add(weights, "c:" + word, COMPANY_WEIGHT));
+        List<String> descriptionWords = words(jobPost.description());
+        for (int i = 0; i + SHINGLE_SIZE <= descriptionWords.size(); i++) {
+            add(weights, String.join(" ", descriptionWords.subList(i, i + SHINGLE_SIZE)), 1);
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the number of bits the fingerprints differ in.
+     */
+    static int distance(long fingerprint, long otherFingerprint) {
+        return Long.bitCount(fingerprint ^ otherFingerprint);
+    }
+
+    private static void add(int[] weights, String feature, int weight) {
+        long hash = JobKeys.hash(feature);
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += (hash >>> bit & 1) == 1 ? weight : -weight;
+        }
+    }
+
+    /**
+     * Splits the text into lower case words, leaving out html tags and punctuation.
+     */
+    private static List<String> words(String text) {
+        if (Objects.isNull(text)) {
+            return List.of();
+        }
+        String plainText = HTML_TAG.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return Arrays.stream(NON_WORD.split(plainText))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+}
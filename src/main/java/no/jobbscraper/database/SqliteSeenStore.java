@@ -0,0 +1,492 @@
+package no.jobbscraper.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the job keys of the scraped urls in the SEEN_JOBS table of the database.
+ * A Bloom filter of the stored job keys for each ip is kept in memory,
+ * so urls the filter has definitely not seen are answered without querying the database.
+ */
+public final class SqliteSeenStore implements ISeenStore {
+
+    private static final Logger logger = Logger.getLogger(SqliteSeenStore.class.getName());
+    private static final String INSERT_SQL =
+            "INSERT OR IGNORE INTO SEEN_JOBS (TARGET_ID, JOB_KEY, EXPIRES_AT, DIGEST, REVISIT_AT) VALUES (?, ?, ?, ?, ?)";
+    // Well below the 32766 host parameters SQLite allows in one statement
+    private static final int MAX_KEYS_PER_QUERY = 512;
+    // Filters are sized for twice the job keys stored for the ip, and at least this many
+    private static final long MIN_EXPECTED_KEYS_PER_IP = 100_000;
+    private final Map<String, BloomFilter> seenFilters = new ConcurrentHashMap<>();
+    private final double falsePositiveRate;
+    private volatile boolean seenFiltersWarmed;
+
+    /**
+     * Constructs a SqliteSeenStore, and warms a Bloom filter of the stored job keys for each ip.
+     * The database must have been set up first.
+     *
+     * @param seenFilterFalsePositiveRate the share of new urls the filters may still send to the database
+     */
+    public SqliteSeenStore(double seenFilterFalsePositiveRate) {
+        this.falsePositiveRate = seenFilterFalsePositiveRate;
+        warmSeenFilters();
+    }
+
+    @Override
+    public boolean exists(String url, String fullIp) {
+        long jobKey = JobKeys.of(url);
+        if (isDefinitelyUnseen(jobKey, fullIp)) {
+            return false;
+        }
+
+        Database.lock.lock();
+        try {
+            PreparedStatement preparedStatement = Database.prepare(
+                    "SELECT EXISTS (SELECT 1 FROM SEEN_JOBS WHERE TARGET_ID = ? AND JOB_KEY = ?)");
+            preparedStatement.setLong(1, Database.targetId(fullIp));
+            preparedStatement.setLong(2, jobKey);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when checking if " + url + " & " + fullIp + " exists", e.getMessage());
+            return false;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the urls whose job posts have not been stored for the ip, with one query per chunk of at most
+     * {@value #MAX_KEYS_PER_QUERY} job keys instead of one query per url.
+     *
+     * @param urls      The urls to check.
+     * @param fullIp    The ip and port of the REST API the urls are sent to.
+     * @return          The urls that have not been stored, in the order they were given.
+     *                  If the lookup fails, every url is returned as unseen.
+     */
+    @Override
+    public List<String> filterUnseen(List<String> urls, String fullIp) {
+        if (urls.isEmpty()) {
+            return List.of();
+        }
+
+        // Only job keys the filter may have seen need to be looked up
+        List<Long> jobKeys = urls.stream()
+                .map(JobKeys::of)
+                .toList();
+        List<Long> maybeSeen = jobKeys.stream()
+                .filter(jobKey -> !isDefinitelyUnseen(jobKey, fullIp))
+                .distinct()
+                .toList();
+        if (maybeSeen.isEmpty()) {
+            return urls;
+        }
+
+        Database.lock.lock();
+        try {
+            Set<Long> seen = new HashSet<>();
+            for (int chunkStart = 0; chunkStart < maybeSeen.size(); chunkStart += MAX_KEYS_PER_QUERY) {
+                List<Long> chunk = maybeSeen.subList(chunkStart, Math.min(maybeSeen.size(), chunkStart + MAX_KEYS_PER_QUERY));
+                seen.addAll(findSeen(chunk, fullIp));
+            }
+
+            List<String> unseenUrls = new ArrayList<>();
+            for (int i = 0; i < urls.size(); i++) {
+                if (!seen.contains(jobKeys.get(i))) {
+                    unseenUrls.add(urls.get(i));
+                }
+            }
+            return unseenUrls;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when checking " + urls.size() + " urls & " + fullIp, e.getMessage());
+            return urls;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Finds which of the given job keys are stored for the ip. Must be called while holding the lock.
+     * The IN list is padded to a power of two by repeating the last key, so only a handful of statements are cached.
+     */
+    private static Set<Long> findSeen(List<Long> jobKeys, String fullIp) throws SQLException {
+        int parameters = Integer.highestOneBit(jobKeys.size());
+        if (parameters < jobKeys.size()) {
+            parameters <<= 1;
+        }
+
+        PreparedStatement preparedStatement = Database.prepare("SELECT JOB_KEY FROM SEEN_JOBS WHERE TARGET_ID = ? AND JOB_KEY IN (" +
+                String.join(", ", Collections.nCopies(parameters, "?")) + ")");
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        for (int i = 0; i < parameters; i++) {
+            preparedStatement.setLong(i + 2, jobKeys.get(Math.min(i, jobKeys.size() - 1)));
+        }
+
+        Set<Long> seen = new HashSet<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                seen.add(resultSet.getLong(1));
+            }
+        }
+        return seen;
+    }
+
+    @Override
+    public void insertUrl(String url, String fullIp) {
+        long jobKey = JobKeys.of(url);
+        Database.lock.lock();
+        try {
+            PreparedStatement preparedStatement = Database.prepare(INSERT_SQL);
+            setInsertParameters(preparedStatement, jobKey, fullIp, new SeenUrl(url, null, null));
+            preparedStatement.executeUpdate();
+            addToSeenFilter(List.of(jobKey), fullIp);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when inserting " + url + " & " + fullIp, e.getMessage());
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the job keys of the given urls in one transaction, as a single JDBC batch.
+     * Urls whose job posts are already stored for the ip do not fail the batch, but are returned as conflicts.
+     * If the batch fails, the transaction is rolled back and none of the urls are stored.
+     *
+     * @param seenUrls  The urls to insert, with the deadlines of their job posts.
+     * @param fullIp    The ip and port of the REST API the urls were sent to.
+     * @return          The urls that were already stored, in the order they were given.
+     */
+    @Override
+    public List<String> insertUrls(List<SeenUrl> seenUrls, String fullIp) {
+        if (seenUrls.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> jobKeys = seenUrls.stream()
+                .map(seenUrl -> JobKeys.of(seenUrl.url()))
+                .toList();
+        Database.lock.lock();
+        try {
+            Connection currentConnection = Database.getConnection();
+            PreparedStatement preparedStatement = Database.prepare(INSERT_SQL);
+            currentConnection.setAutoCommit(false);
+            try {
+                for (int i = 0; i < seenUrls.size(); i++) {
+                    setInsertParameters(preparedStatement, jobKeys.get(i), fullIp, seenUrls.get(i));
+                    preparedStatement.addBatch();
+                }
+                int[] updateCounts = preparedStatement.executeBatch();
+                currentConnection.commit();
+                addToSeenFilter(jobKeys, fullIp);
+
+                // An ignored row was not inserted because the job post was already stored
+                List<String> conflicts = new ArrayList<>();
+                for (int i = 0; i < updateCounts.length; i++) {
+                    if (updateCounts[i] == 0) {
+                        conflicts.add(seenUrls.get(i).url());
+                    }
+                }
+                return conflicts;
+            } catch (SQLException e) {
+                preparedStatement.clearBatch();
+                currentConnection.rollback();
+                throw e;
+            } finally {
+                currentConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when inserting " + seenUrls.size() + " urls & " + fullIp, e.getMessage());
+            return List.of();
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    private static void setInsertParameters(PreparedStatement preparedStatement, long jobKey, String fullIp, SeenUrl seenUrl)
+            throws SQLException {
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        preparedStatement.setLong(2, jobKey);
+        preparedStatement.setLong(3, Database.expiresAt(seenUrl.deadline()));
+        preparedStatement.setObject(4, seenUrl.digest());
+        preparedStatement.setLong(5, Database.revisitAt());
+    }
+
+    /**
+     * Finds the urls due for a revisit, with one query per chunk of at most {@value #MAX_KEYS_PER_QUERY} job keys.
+     * Rows stored before digests were kept have none, and are never due.
+     */
+    @Override
+    public Map<String, Long> findDueForRevisit(List<String> urls, String fullIp, long now) {
+        if (urls.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, List<String>> urlsByJobKey = new LinkedHashMap<>();
+        urls.forEach(url -> urlsByJobKey.computeIfAbsent(JobKeys.of(url), jobKey -> new ArrayList<>()).add(url));
+        List<Long> jobKeys = List.copyOf(urlsByJobKey.keySet());
+
+        Database.lock.lock();
+        try {
+            Map<String, Long> dueDigests = new HashMap<>();
+            for (int chunkStart = 0; chunkStart < jobKeys.size(); chunkStart += MAX_KEYS_PER_QUERY) {
+                List<Long> chunk = jobKeys.subList(chunkStart, Math.min(jobKeys.size(), chunkStart + MAX_KEYS_PER_QUERY));
+                findDueDigests(chunk, fullIp, now).forEach((jobKey, digest) ->
+                        urlsByJobKey.get(jobKey).forEach(url -> dueDigests.put(url, digest)));
+            }
+            return dueDigests;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when finding urls due for a revisit & " + fullIp, e.getMessage());
+            return Map.of();
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the digests of the given job keys that are due for a revisit. Must be called while holding the lock.
+     * The IN list is padded to a power of two like in {@link #findSeen(List, String)}.
+     */
+    private static Map<Long, Long> findDueDigests(List<Long> jobKeys, String fullIp, long now) throws SQLException {
+        int parameters = Integer.highestOneBit(jobKeys.size());
+        if (parameters < jobKeys.size()) {
+            parameters <<= 1;
+        }
+
+        PreparedStatement preparedStatement = Database.prepare("SELECT JOB_KEY, DIGEST FROM SEEN_JOBS " +
+                "WHERE TARGET_ID = ? AND REVISIT_AT <= ? AND DIGEST IS NOT NULL AND JOB_KEY IN (" +
+                String.join(", ", Collections.nCopies(parameters, "?")) + ")");
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        preparedStatement.setLong(2, now);
+        for (int i = 0; i < parameters; i++) {
+            preparedStatement.setLong(i + 3, jobKeys.get(Math.min(i, jobKeys.size() - 1)));
+        }
+
+        Map<Long, Long> dueDigests = new HashMap<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                dueDigests.put(resultSet.getLong(1), resultSet.getLong(2));
+            }
+        }
+        return dueDigests;
+    }
+
+    /**
+     * Updates the revisited rows in one transaction, as a single JDBC batch.
+     */
+    @Override
+    public void updateUrls(List<SeenUrl> seenUrls, String fullIp) {
+        if (seenUrls.isEmpty()) {
+            return;
+        }
+
+        Database.lock.lock();
+        try {
+            Connection currentConnection = Database.getConnection();
+            PreparedStatement preparedStatement = Database.prepare("UPDATE SEEN_JOBS " +
+                    "SET EXPIRES_AT = ?, DIGEST = ?, REVISIT_AT = ? WHERE TARGET_ID = ? AND JOB_KEY = ?");
+            currentConnection.setAutoCommit(false);
+            try {
+                for (SeenUrl seenUrl : seenUrls) {
+                    preparedStatement.setLong(1, Database.expiresAt(seenUrl.deadline()));
+                    preparedStatement.setObject(2, seenUrl.digest());
+                    preparedStatement.setLong(3, Database.revisitAt());
+                    preparedStatement.setLong(4, Database.targetId(fullIp));
+                    preparedStatement.setLong(5, JobKeys.of(seenUrl.url()));
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                currentConnection.commit();
+            } catch (SQLException e) {
+                preparedStatement.clearBatch();
+                currentConnection.rollback();
+                throw e;
+            } finally {
+                currentConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when updating " + seenUrls.size() + " urls & " + fullIp, e.getMessage());
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes at most maxRows expired rows, using the index on EXPIRES_AT.
+     * The Bloom filters keep the removed job keys until they are rebuilt, which only sends a few more lookups to the database.
+     */
+    @Override
+    public int purgeExpired(long now, int maxRows) {
+        Database.lock.lock();
+        try {
+            PreparedStatement preparedStatement = Database.prepare("DELETE FROM SEEN_JOBS WHERE (TARGET_ID, JOB_KEY) IN " +
+                    "(SELECT TARGET_ID, JOB_KEY FROM SEEN_JOBS WHERE EXPIRES_AT < ? LIMIT ?)");
+            preparedStatement.setLong(1, now);
+            preparedStatement.setInt(2, maxRows);
+            return preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error occurred when purging expired urls", e.getMessage());
+            return 0;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the Bloom filters. The connection is owned by {@link Database}, and closed there.
+     */
+    @Override
+    public void close() {
+        seenFiltersWarmed = false;
+        seenFilters.clear();
+    }
+
+    /**
+     * Counts the stored job keys of every ip.
+     *
+     * @return the number of rows in SEEN_JOBS
+     * @throws SQLException if the job keys could not be counted
+     */
+    static long countStoredKeys() throws SQLException {
+        Database.lock.lock();
+        try (Statement statement = Database.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM SEEN_JOBS")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Passes every stored job key to the consumer, for moving the job keys to another store.
+     *
+     * @param consumer  Called with each row.
+     * @throws SQLException if the job keys could not be read
+     */
+    static void forEachStoredKey(Consumer<StoredKey> consumer) throws SQLException {
+        Database.lock.lock();
+        try (Statement statement = Database.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT IP, JOB_KEY, EXPIRES_AT FROM SEEN_JOBS " +
+                     "JOIN TARGETS ON TARGETS.ID = SEEN_JOBS.TARGET_ID WHERE IP IS NOT NULL")) {
+            while (resultSet.next()) {
+                consumer.accept(new StoredKey(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3)));
+            }
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks the Bloom filter of the ip for the job key.
+     * Before the filters have been warmed nothing is known, so every job key may have been seen.
+     *
+     * @param jobKey    The job key to check.
+     * @param fullIp    The ip and port of the REST API the url is sent to.
+     * @return          true if the job key has definitely not been stored for the ip
+     */
+    private boolean isDefinitelyUnseen(long jobKey, String fullIp) {
+        if (!seenFiltersWarmed) {
+            return false;
+        }
+        // The filters hold every ip stored when they were warmed, so an ip without a filter has no job keys yet
+        BloomFilter seenFilter = seenFilters.get(fullIp);
+        return Objects.isNull(seenFilter) || !seenFilter.mightContain(jobKey);
+    }
+
+    /**
+     * Adds stored job keys to the Bloom filter of the ip, rebuilding it larger once it holds more keys than it was sized for.
+     * Must be called while holding the lock.
+     */
+    private void addToSeenFilter(List<Long> jobKeys, String fullIp) {
+        if (!seenFiltersWarmed) {
+            return;
+        }
+
+        BloomFilter seenFilter = seenFilters.computeIfAbsent(fullIp,
+                ip -> new BloomFilter(MIN_EXPECTED_KEYS_PER_IP, falsePositiveRate));
+        jobKeys.forEach(seenFilter::add);
+        if (seenFilter.isOverCapacity()) {
+            try {
+                loadSeenFilter(fullIp, countKeys(fullIp));
+            } catch (SQLException e) {
+                // The full filter still has every job key, it only gives more false positives
+                logger.log(Level.WARNING, "Error occurred when rebuilding the seen url filter for " + fullIp, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Builds a Bloom filter of the stored job keys for each ip.
+     */
+    private void warmSeenFilters() {
+        Database.lock.lock();
+        try (Statement statement = Database.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT IP, COUNT(*) FROM SEEN_JOBS " +
+                     "JOIN TARGETS ON TARGETS.ID = SEEN_JOBS.TARGET_ID WHERE IP IS NOT NULL GROUP BY TARGET_ID")) {
+            Map<String, Long> keysPerIp = new HashMap<>();
+            while (resultSet.next()) {
+                keysPerIp.put(resultSet.getString(1), resultSet.getLong(2));
+            }
+            for (Map.Entry<String, Long> ipEntry : keysPerIp.entrySet()) {
+                loadSeenFilter(ipEntry.getKey(), ipEntry.getValue());
+            }
+            seenFiltersWarmed = true;
+        } catch (SQLException e) {
+            seenFilters.clear();
+            logger.log(Level.SEVERE, "Error occurred when warming the seen url filters, checking every url in the database", e.getMessage());
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the Bloom filter of the ip with one holding every job key stored for it. Must be called while holding the lock.
+     */
+    private void loadSeenFilter(String fullIp, long storedKeys) throws SQLException {
+        BloomFilter seenFilter = new BloomFilter(Math.max(MIN_EXPECTED_KEYS_PER_IP, storedKeys * 2), falsePositiveRate);
+        PreparedStatement preparedStatement = Database.prepare("SELECT JOB_KEY FROM SEEN_JOBS WHERE TARGET_ID = ?");
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                seenFilter.add(resultSet.getLong(1));
+            }
+        }
+        seenFilters.put(fullIp, seenFilter);
+        logger.info(String.format("Loaded %s job keys for %s into a seen url filter of %s KB with %s hash functions",
+                storedKeys, fullIp, seenFilter.getBitCount() / 8 / 1024, seenFilter.getHashFunctions()));
+    }
+
+    private static long countKeys(String fullIp) throws SQLException {
+        PreparedStatement preparedStatement = Database.prepare("SELECT COUNT(*) FROM SEEN_JOBS WHERE TARGET_ID = ?");
+        preparedStatement.setLong(1, Database.targetId(fullIp));
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * A row of SEEN_JOBS, with the ip and port of its target.
+     *
+     * @param fullIp    the ip and port of the REST API the job post was sent to
+     * @param jobKey    the job key of the job post
+     * @param expiresAt when the row expires, in epoch seconds
+     */
+    record StoredKey(String fullIp, long jobKey, long expiresAt) {
+    }
+}
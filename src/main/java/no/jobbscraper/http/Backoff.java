@@ -0,0 +1,36 @@
+package no.jobbscraper.http;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Computes how long to wait before retrying a failed fetch.
+ * Uses exponential backoff with full jitter, unless the server told us how long to wait.
+ */
+public final class Backoff {
+
+    private static final Duration BASE_DELAY = Duration.ofMillis(500);
+    private static final Duration MAX_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+
+    private Backoff() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the delay before the next attempt.
+     *
+     * @param attempt       the number of the attempt that just failed, starting at 1
+     * @param retryAfter    the delay asked for by the server, or null if not given
+     * @return              the delay before the next attempt
+     */
+    public static Duration delay(int attempt, Duration retryAfter) {
+        if (retryAfter != null) {
+            return retryAfter.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : retryAfter;
+        }
+
+        long ceilingMillis = Math.min(MAX_DELAY.toMillis(),
+                BASE_DELAY.toMillis() << Math.min(attempt - 1, 16));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceilingMillis + 1));
+    }
+}
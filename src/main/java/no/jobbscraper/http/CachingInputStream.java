@@ -0,0 +1,67 @@
+package no.jobbscraper.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * An input stream that keeps a copy of everything read from it,
+ * and hands the copy over once the end of the stream is reached.
+ * A stream closed before its end is never handed over, so partly read pages are not cached.
+ */
+final class CachingInputStream extends FilterInputStream {
+
+    private final ByteArrayOutputStream copy;
+    private final Consumer<byte[]> onComplete;
+    private boolean completed;
+
+    CachingInputStream(InputStream inputStream, Consumer<byte[]> onComplete) {
+        super(inputStream);
+        this.copy = new ByteArrayOutputStream();
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value == -1) {
+            complete();
+        } else {
+            copy.write(value);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read == -1) {
+            complete();
+        } else {
+            copy.write(buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would leave a hole in the copy, so read them instead
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        int read = read(buffer, 0, buffer.length);
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void complete() {
+        if (!completed) {
+            completed = true;
+            onComplete.accept(copy.toByteArray());
+        }
+    }
+}
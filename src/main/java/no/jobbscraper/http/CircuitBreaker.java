@@ -0,0 +1,163 @@
+package no.jobbscraper.http;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A circuit breaker guarding fetches against one host.
+ * After {@code failureThreshold} failures in a row the breaker opens, and fetches fail fast
+ * until the cool-down has passed. The breaker then goes half open and lets a single probe request through,
+ * closing again if it succeeds and opening again if it fails. Other requests fail fast while the probe is out.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+    private final String host;
+    private final int failureThreshold;
+    private final Duration coolDown;
+    private final ReentrantLock lock;
+    private final AtomicLong rejectedRequests;
+    private State state;
+    // Whether the one request let through half open is still waiting for its result
+    private boolean probing;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private int timesOpened;
+
+    public CircuitBreaker(String host, int failureThreshold, Duration coolDown) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+        this.lock = new ReentrantLock();
+        this.rejectedRequests = new AtomicLong();
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Checks if a request may be sent to the host.
+     * Moves an open breaker to half open once the cool-down has passed.
+     * Half open, only the first caller is let through, and must report the result
+     * with {@link #recordSuccess()}, {@link #recordFailure()} or {@link #releaseProbe()}.
+     *
+     * @return true if the request may be sent, false if it should fail fast
+     */
+    public boolean allowRequest() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (getRemainingCoolDown().isZero()) {
+                    transitionTo(State.HALF_OPEN);
+                } else {
+                    rejectedRequests.incrementAndGet();
+                    return false;
+                }
+            }
+            if (state == State.HALF_OPEN) {
+                if (probing) {
+                    rejectedRequests.incrementAndGet();
+                    return false;
+                }
+                probing = true;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordSuccess() {
+        lock.lock();
+        try {
+            probing = false;
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                transitionTo(State.CLOSED);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordFailure() {
+        lock.lock();
+        try {
+            probing = false;
+            consecutiveFailures += 1;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                openedAtNanos = System.nanoTime();
+                timesOpened += 1;
+                transitionTo(State.OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives up a request let through without a result, such as one that was interrupted,
+     * so another request may probe the host while the breaker is half open.
+     */
+    public void releaseProbe() {
+        lock.lock();
+        try {
+            probing = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return state == State.OPEN;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long is left until an open breaker lets requests through again.
+     *
+     * @return the remaining cool-down, or zero if the breaker is not open
+     */
+    public Duration getRemainingCoolDown() {
+        lock.lock();
+        try {
+            if (state != State.OPEN) {
+                return Duration.ZERO;
+            }
+            Duration remaining = coolDown.minusNanos(System.nanoTime() - openedAtNanos);
+            return remaining.isNegative() ? Duration.ZERO : remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a summary of the breaker, for logging.
+     *
+     * @return the state, the number of times opened and the number of rejected requests
+     */
+    public String getStatistics() {
+        lock.lock();
+        try {
+            return String.format("circuit breaker for %s is %s, opened %s times, rejected %s requests",
+                    host, state, timesOpened, rejectedRequests.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void transitionTo(State newState) {
+        logger.warning(String.format("Circuit breaker for %s changed from %s to %s", host, state, newState));
+        state = newState;
+    }
+}
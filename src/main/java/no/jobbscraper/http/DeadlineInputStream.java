@@ -0,0 +1,89 @@
+package no.jobbscraper.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An input stream that must be read to its end before a deadline.
+ * Once the deadline passes, the underlying stream is closed, which unblocks a read
+ * waiting on a stalled server, and every read after that fails with a {@link HttpTimeoutException}.
+ */
+final class DeadlineInputStream extends FilterInputStream {
+
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+    private final Duration timeout;
+    private final long deadlineNanos;
+    private final ScheduledFuture<?> closeAtDeadline;
+
+    DeadlineInputStream(InputStream inputStream, Duration timeout) {
+        super(inputStream);
+        this.timeout = timeout;
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+        this.closeAtDeadline = WATCHDOG.schedule(this::closeQuietly, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        try {
+            return super.read();
+        } catch (IOException e) {
+            checkDeadline();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        checkDeadline();
+        try {
+            return super.read(buffer, offset, length);
+        } catch (IOException e) {
+            checkDeadline();
+            throw e;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkDeadline();
+        return super.skip(n);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeAtDeadline.cancel(false);
+        super.close();
+    }
+
+    private void checkDeadline() throws HttpTimeoutException {
+        if (System.nanoTime() - deadlineNanos >= 0) {
+            throw new HttpTimeoutException("Reading the response body took longer than " + timeout.toMillis() + " ms");
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // The reader gets the timeout on its next read either way
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "body-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+}
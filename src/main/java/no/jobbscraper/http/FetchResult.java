@@ -0,0 +1,26 @@
+package no.jobbscraper.http;
+
+import java.util.Objects;
+
+/**
+ * The result of fetching a page, possibly conditionally.
+ *
+ * @param content       the parsed page, or null if the server answered 304 Not Modified
+ * @param validators    the validators for the page, to send on the next conditional fetch
+ * @param <T>           the type the page was parsed into
+ */
+public record FetchResult<T>(T content, Validators validators) {
+
+    public static <T> FetchResult<T> notModified(Validators validators) {
+        return new FetchResult<>(null, validators);
+    }
+
+    /**
+     * Checks if the server answered that the page has not changed since the validators were issued.
+     *
+     * @return true if the server answered 304 Not Modified
+     */
+    public boolean isNotModified() {
+        return Objects.isNull(content);
+    }
+}
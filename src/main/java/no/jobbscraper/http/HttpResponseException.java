@@ -0,0 +1,71 @@
+package no.jobbscraper.http;
+
+import org.jsoup.HttpStatusException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Thrown when a fetch returns a status code outside 2xx.
+ * Keeps the {@code Retry-After} header of the response, so callers can honour it when retrying.
+ */
+public class HttpResponseException extends HttpStatusException {
+
+    private static final long serialVersionUID = 1L;
+    private final Duration retryAfter;
+
+    public HttpResponseException(int statusCode, String url, String retryAfterHeader) {
+        super("HTTP error fetching URL", statusCode, url);
+        this.retryAfter = parseRetryAfter(retryAfterHeader);
+    }
+
+    /**
+     * Returns how long the server asked us to wait before retrying, if it said so.
+     *
+     * @return the delay from the Retry-After header, or empty if not given
+     */
+    public Optional<Duration> getRetryAfter() {
+        return Optional.ofNullable(retryAfter);
+    }
+
+    /**
+     * Checks if retrying the request might succeed.
+     * Server errors, timeouts and throttling are retryable, other client errors such as 404 are not.
+     *
+     * @return true if the request should be retried
+     */
+    public boolean isRetryable() {
+        int statusCode = getStatusCode();
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * Parses a Retry-After header given either as delay seconds or as an HTTP date.
+     *
+     * @param header    the header value, may be null
+     * @return          the delay, or null if the header is missing or malformed
+     */
+    private static Duration parseRetryAfter(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+
+        String value = header.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Not delay seconds, try an HTTP date
+        }
+
+        try {
+            Duration delay = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package no.jobbscraper.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A pooled HTTP transport shared by every fetch against the same host.
+ * Each host gets one {@link HttpClient}, which keeps connections alive,
+ * reuses TLS sessions, stores cookies and negotiates HTTP/2 where the site offers it.
+ * Every request passes through the {@link RateLimiter} of the host, if one is set,
+ * and the host has a {@link CircuitBreaker} callers use to fail fast while it is down.
+ * If a {@link ResponseCache} is set, it is consulted before going to the network.
+ */
+public final class HttpTransport {
+
+    private static final Map<String, HttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+    private static final String USER_AGENT = "Mozilla/5.0 (Linux; Android 6.0; Nexus 5 Build/MRA58N) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/123.0.0.0 Mobile Safari/537.36";
+    private static final String ACCEPT_LANGUAGE = "nb-NO,nb;q=0.9";
+    // HttpClient does not decode responses, so only offer encodings the JDK can inflate
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final Duration TIMEOUT = Duration.ofMillis(10000);
+    private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final Duration CIRCUIT_BREAKER_COOL_DOWN = Duration.ofSeconds(60);
+    private static volatile ResponseCache responseCache;
+    private final String host;
+    private final HttpClient httpClient;
+    private final CircuitBreaker circuitBreaker;
+    private volatile RateLimiter rateLimiter;
+
+    private HttpTransport(String host) {
+        this.host = host;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .cookieHandler(new CookieManager())
+                .build();
+        this.circuitBreaker = new CircuitBreaker(host, CIRCUIT_BREAKER_FAILURE_THRESHOLD, CIRCUIT_BREAKER_COOL_DOWN);
+    }
+
+    /**
+     * Returns the transport shared by all fetches against the host of the given url.
+     *
+     * @param url   The url to fetch.
+     * @return      The transport for the host of the url.
+     */
+    public static HttpTransport forUrl(String url) {
+        return TRANSPORTS.computeIfAbsent(hostOf(url), HttpTransport::new);
+    }
+
+    /**
+     * Returns the lower case host of the given url.
+     *
+     * @param url   The url to get the host from.
+     * @return      The host of the url.
+     * @throws IllegalArgumentException if the url has no host
+     */
+    public static String hostOf(String url) {
+        String host = URI.create(url).getHost();
+        if (host == null) {
+            throw new IllegalArgumentException("Url " + url + " has no host");
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the rate limiter every request against this host has to pass through.
+     *
+     * @param rateLimiter   the rate limiter for the host
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the on-disk cache consulted by every transport before going to the network.
+     *
+     * @param cache the response cache, or null to disable caching
+     */
+    public static void setResponseCache(ResponseCache cache) {
+        responseCache = cache;
+    }
+
+    /**
+     * Fetches the given url, sending If-None-Match and If-Modified-Since if validators are given.
+     * If the server answers 304 Not Modified, the page is not downloaded or parsed.
+     * Otherwise, the body is handed to the parser while it is still being downloaded.
+     * <p>
+     * If the response cache is enabled, a cached copy younger than {@code maxAge} is used without
+     * going to the network. An older copy is revalidated with its own validators, and reused if
+     * the server answers 304. Pages are only cached if the parser reads them to the end.
+     *
+     * @param url           The url to fetch.
+     * @param validators    The validators from the last complete scrape of the url, or null to fetch unconditionally.
+     * @param maxAge        How old a cached copy of the page may be before it is revalidated.
+     * @param parser        The parser to parse the body with.
+     * @param <T>           The type the body is parsed into.
+     * @return              The result holding the parsed body and the new validators of the page.
+     * @throws IOException          if the request fails, or a {@link HttpResponseException} if the status is not 2xx or 304
+     * @throws InterruptedException if interrupted while waiting for the rate limiter or the response
+     */
+    public <T> FetchResult<T> fetch(String url, Validators validators, Duration maxAge, IBodyParser<T> parser)
+            throws IOException, InterruptedException {
+        ResponseCache cache = responseCache;
+        ResponseCache.CachedResponse cached = Objects.isNull(cache) ? null : cache.get(url).orElse(null);
+
+        if (Objects.nonNull(cached) && cached.isFresh(maxAge)) {
+            if (Objects.nonNull(validators) && validators.equals(cached.validators())) {
+                return FetchResult.notModified(validators);
+            }
+            return new FetchResult<>(parse(cached, parser), cached.validators());
+        }
+
+        RateLimiter currentRateLimiter = rateLimiter;
+        if (currentRateLimiter != null) {
+            currentRateLimiter.acquire();
+        }
+
+        // Without validators from the caller, revalidate the cached copy instead
+        boolean revalidatingCache = Objects.isNull(validators) && Objects.nonNull(cached);
+        Validators conditionalValidators = revalidatingCache ? cached.validators() : validators;
+        HttpResponse<InputStream> response = httpClient.send(buildRequest(url, conditionalValidators),
+                HttpResponse.BodyHandlers.ofInputStream());
+
+        if (response.statusCode() == 304 && conditionalValidators != null && !conditionalValidators.isEmpty()) {
+            response.body().close();
+            if (Objects.nonNull(cached) && conditionalValidators.equals(cached.validators())) {
+                ResponseCache.CachedResponse revalidated = new ResponseCache.CachedResponse(cached.body(),
+                        cached.charset(), cached.location(), cached.validators(), Instant.now());
+                cache.put(url, revalidated);
+                if (revalidatingCache) {
+                    return new FetchResult<>(parse(revalidated, parser), revalidated.validators());
+                }
+            }
+            return FetchResult.notModified(conditionalValidators);
+        }
+
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            response.body().close();
+            throw new HttpResponseException(response.statusCode(), url,
+                    response.headers().firstValue("Retry-After").orElse(null));
+        }
+
+        Validators newValidators = new Validators(
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null));
+        String charset = charsetOf(response);
+        String location = response.uri().toString();
+
+        // The request timeout only covers the headers, so the body gets a deadline of its own
+        InputStream body = decode(response, new DeadlineInputStream(response.body(), TIMEOUT));
+        if (Objects.nonNull(cache)) {
+            Instant fetchedAt = Instant.now();
+            body = new CachingInputStream(body, bytes -> cache.put(url,
+                    new ResponseCache.CachedResponse(bytes, charset, location, newValidators, fetchedAt)));
+        }
+
+        try (InputStream inputStream = body) {
+            return new FetchResult<>(parser.parse(inputStream, charset, location), newValidators);
+        }
+    }
+
+    private static <T> T parse(ResponseCache.CachedResponse cached, IBodyParser<T> parser) throws IOException {
+        return parser.parse(new ByteArrayInputStream(cached.body()), cached.charset(), cached.location());
+    }
+
+    private HttpRequest buildRequest(String url, Validators validators) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Language", ACCEPT_LANGUAGE)
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+
+        if (validators != null && validators.etag() != null) {
+            builder.header("If-None-Match", validators.etag());
+        }
+        if (validators != null && validators.lastModified() != null) {
+            builder.header("If-Modified-Since", validators.lastModified());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Wraps the response body in a decompressing stream if the server compressed it.
+     *
+     * @param response  The response to decode.
+     * @param body      The stream of the response body as sent by the server.
+     * @return          A stream of the decoded response body.
+     * @throws IOException if the compressed body is malformed
+     */
+    private static InputStream decode(HttpResponse<InputStream> response, InputStream body) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        try {
+            return switch (encoding.toLowerCase(Locale.ROOT)) {
+                case "gzip" -> new GZIPInputStream(body);
+                case "deflate" -> new InflaterInputStream(body);
+                default -> body;
+            };
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the charset given in the Content-Type header, or null to let Jsoup detect it.
+     *
+     * @param response  The response to get the charset from.
+     * @return          The charset name, or null if not given.
+     */
+    private static String charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+}
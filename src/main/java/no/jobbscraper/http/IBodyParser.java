@@ -0,0 +1,32 @@
+package no.jobbscraper.http;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses the body of a fetched page while it is being read.
+ *
+ * @param <T> the type the body is parsed into
+ */
+@FunctionalInterface
+public interface IBodyParser<T> {
+
+    /**
+     * Parses the whole body into a Jsoup {@link Document}.
+     */
+    IBodyParser<Document> DOCUMENT = Jsoup::parse;
+
+    /**
+     * Parses the body of a page.
+     *
+     * @param body      the decoded body, read as it arrives from the network
+     * @param charset   the charset from the Content-Type header, or null if not given
+     * @param location  the final url of the page after redirects
+     * @return          the parsed body
+     * @throws IOException if the body could not be read
+     */
+    T parse(InputStream body, String charset, String location) throws IOException;
+}
@@ -0,0 +1,95 @@
+package no.jobbscraper.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket rate limiter.
+ * Tokens are refilled at a fixed rate up to the burst size, and every request takes one token.
+ * Callers that find the bucket empty reserve a future token and sleep outside the lock,
+ * so waiting virtual threads park instead of pinning their carrier.
+ */
+public final class RateLimiter {
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final ReentrantLock lock;
+    private double storedTokens;
+    private long lastRefillNanos;
+
+    /**
+     * Constructs a RateLimiter with a full bucket.
+     *
+     * @param permitsPerSecond  the number of requests allowed per second
+     * @param burst             the number of requests allowed back to back
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond) || burst < 1) {
+            throw new IllegalArgumentException("Rate limit must be positive, got " + permitsPerSecond + ":" + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.lock = new ReentrantLock();
+        this.storedTokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Parses a rate limit on the form {@code <requests per second>:<burst>}, for example {@code 2.5:5}.
+     * If the burst is left out, it defaults to the requests per second rounded up.
+     *
+     * @param value the rate limit to parse
+     * @return      a RateLimiter with the given rate and burst
+     * @throws IllegalArgumentException if the value could not be parsed
+     */
+    public static RateLimiter parse(String value) {
+        String[] parts = value.split(":");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Could not parse '" + value + "' into a rate limit");
+        }
+        double permitsPerSecond = Double.parseDouble(parts[0]);
+        int burst = parts.length == 2 ? Integer.parseInt(parts[1]) : (int) Math.ceil(permitsPerSecond);
+        return new RateLimiter(permitsPerSecond, burst);
+    }
+
+    /**
+     * Takes a token, sleeping until one is available.
+     *
+     * @throws InterruptedException if interrupted while waiting for a token
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reserves the next token and returns how long the caller has to wait for it.
+     * The bucket may go negative, which queues callers up in the order they arrived.
+     *
+     * @return the number of nanoseconds to wait before the token is available
+     */
+    private long reserve() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            double refilled = (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            storedTokens = Math.min(burst, storedTokens + refilled);
+            lastRefillNanos = now;
+
+            storedTokens -= 1;
+            if (storedTokens >= 0) {
+                return 0;
+            }
+            return (long) (-storedTokens / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return permitsPerSecond + " requests/s, burst " + burst;
+    }
+}
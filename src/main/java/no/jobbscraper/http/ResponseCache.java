@@ -0,0 +1,330 @@
+package no.jobbscraper.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An on-disk cache of fetched pages.
+ * Bodies are stored gzip compressed under the SHA-256 of their content in {@code blobs/},
+ * so identical pages are only stored once. Each url has a small entry in {@code entries/}
+ * pointing at its blob, together with the validators and the time it was fetched.
+ * Once the blobs pass the byte budget, the least recently used ones are evicted together with the entries pointing at them.
+ */
+public final class ResponseCache {
+
+    /**
+     * A cached page.
+     *
+     * @param body          the decoded body of the page
+     * @param charset       the charset from the Content-Type header, or null if not given
+     * @param location      the final url of the page after redirects
+     * @param validators    the validators sent with the page
+     * @param fetchedAt     when the page was last fetched or revalidated
+     */
+    public record CachedResponse(byte[] body, String charset, String location, Validators validators, Instant fetchedAt) {
+
+        public boolean isFresh(Duration maxAge) {
+            return fetchedAt.plus(maxAge).isAfter(Instant.now());
+        }
+    }
+
+    private record BlobInfo(long size, long lastAccessMillis) {}
+
+    private static final Logger logger = Logger.getLogger(ResponseCache.class.getName());
+    // Evict down to this share of the budget, so eviction does not run on every store
+    private static final double EVICTION_TARGET = 0.9;
+    private final Path entriesDirectory;
+    private final Path blobsDirectory;
+    private final long maxBytes;
+    private final Map<String, BlobInfo> blobs;
+    // The names of the entries pointing at each blob, so evicting a blob removes its entries too
+    private final Map<String, Set<String>> entriesByBlob;
+    private final AtomicLong totalBytes;
+    private final ReentrantLock evictionLock;
+
+    /**
+     * Constructs a ResponseCache in the given directory, picking up pages cached by earlier runs.
+     *
+     * @param directory the directory to store the cache in
+     * @param maxBytes  the number of compressed bytes to keep before evicting
+     * @throws IOException if the directory could not be created or read
+     */
+    public ResponseCache(Path directory, long maxBytes) throws IOException {
+        this.entriesDirectory = Files.createDirectories(directory.resolve("entries"));
+        this.blobsDirectory = Files.createDirectories(directory.resolve("blobs"));
+        this.maxBytes = maxBytes;
+        this.blobs = new ConcurrentHashMap<>();
+        this.entriesByBlob = new ConcurrentHashMap<>();
+        this.totalBytes = new AtomicLong();
+        this.evictionLock = new ReentrantLock();
+        loadBlobs();
+        loadEntries();
+        logger.info(String.format("Response cache at %s holds %s blobs, %s bytes", directory, blobs.size(), totalBytes.get()));
+    }
+
+    /**
+     * Looks up the cached page for the given url.
+     * An entry whose blob has been evicted counts as a miss and is removed.
+     *
+     * @param url   the url of the page
+     * @return      the cached page, or empty if the url is not cached
+     */
+    public Optional<CachedResponse> get(String url) {
+        Path entryPath = entriesDirectory.resolve(sha256(url.getBytes(StandardCharsets.UTF_8)));
+        if (!Files.exists(entryPath)) {
+            return Optional.empty();
+        }
+
+        try {
+            Properties entry = readEntry(entryPath);
+
+            // Two urls hashing to the same entry is practically impossible, but cheap to rule out
+            if (!url.equals(entry.getProperty("url"))) {
+                return Optional.empty();
+            }
+
+            String digest = entry.getProperty("blob");
+            Path blobPath = blobsDirectory.resolve(digest);
+            byte[] body;
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(blobPath))) {
+                body = inputStream.readAllBytes();
+            } catch (NoSuchFileException e) {
+                Files.deleteIfExists(entryPath);
+                return Optional.empty();
+            }
+            markAccessed(digest, blobPath);
+
+            return Optional.of(new CachedResponse(body,
+                    entry.getProperty("charset"),
+                    entry.getProperty("location"),
+                    new Validators(entry.getProperty("etag"), entry.getProperty("lastModified")),
+                    Instant.ofEpochMilli(Long.parseLong(entry.getProperty("fetchedAt")))));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not read cached page for " + url, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a page for the given url, replacing any page cached for it before.
+     *
+     * @param url       the url of the page
+     * @param response  the page to cache
+     */
+    public void put(String url, CachedResponse response) {
+        try {
+            String digest = sha256(response.body());
+            Path blobPath = blobsDirectory.resolve(digest);
+            if (!Files.exists(blobPath)) {
+                writeBlob(blobPath, response.body());
+                long size = Files.size(blobPath);
+                if (blobs.putIfAbsent(digest, new BlobInfo(size, System.currentTimeMillis())) == null) {
+                    totalBytes.addAndGet(size);
+                }
+            } else {
+                markAccessed(digest, blobPath);
+            }
+
+            writeEntry(url, digest, response);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not cache page for " + url, e);
+            return;
+        }
+
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    private void writeBlob(Path blobPath, byte[] body) throws IOException {
+        Path temporaryPath = Files.createTempFile(blobsDirectory, "blob", ".tmp");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(temporaryPath))) {
+            outputStream.write(body);
+        }
+        moveAtomically(temporaryPath, blobPath);
+    }
+
+    private void writeEntry(String url, String digest, CachedResponse response) throws IOException {
+        Properties entry = new Properties();
+        entry.setProperty("url", url);
+        entry.setProperty("blob", digest);
+        entry.setProperty("location", response.location());
+        entry.setProperty("fetchedAt", String.valueOf(response.fetchedAt().toEpochMilli()));
+        if (response.charset() != null) {
+            entry.setProperty("charset", response.charset());
+        }
+        if (response.validators().etag() != null) {
+            entry.setProperty("etag", response.validators().etag());
+        }
+        if (response.validators().lastModified() != null) {
+            entry.setProperty("lastModified", response.validators().lastModified());
+        }
+
+        Path temporaryPath = Files.createTempFile(entriesDirectory, "entry", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            entry.store(writer, null);
+        }
+        String entryName = sha256(url.getBytes(StandardCharsets.UTF_8));
+        moveAtomically(temporaryPath, entriesDirectory.resolve(entryName));
+        entriesByBlob.computeIfAbsent(digest, key -> ConcurrentHashMap.newKeySet()).add(entryName);
+    }
+
+    private static Properties readEntry(Path entryPath) throws IOException {
+        Properties entry = new Properties();
+        try (Reader reader = Files.newBufferedReader(entryPath, StandardCharsets.UTF_8)) {
+            entry.load(reader);
+        }
+        return entry;
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void markAccessed(String digest, Path blobPath) {
+        long now = System.currentTimeMillis();
+        blobs.computeIfPresent(digest, (key, blobInfo) -> new BlobInfo(blobInfo.size(), now));
+        try {
+            // Keep the access time on disk, so the next run evicts in the same order
+            Files.setLastModifiedTime(blobPath, FileTime.fromMillis(now));
+        } catch (IOException e) {
+            logger.fine("Could not update access time of " + blobPath);
+        }
+    }
+
+    /**
+     * Deletes the least recently used blobs until the cache is below the eviction target,
+     * and the entries pointing at them.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long target = (long) (maxBytes * EVICTION_TARGET);
+            List<Map.Entry<String, BlobInfo>> leastRecentlyUsed = blobs.entrySet().stream()
+                    .sorted(Comparator.comparingLong(blobEntry -> blobEntry.getValue().lastAccessMillis()))
+                    .toList();
+
+            int evicted = 0;
+            for (Map.Entry<String, BlobInfo> blobEntry : leastRecentlyUsed) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(blobsDirectory.resolve(blobEntry.getKey()));
+                    if (blobs.remove(blobEntry.getKey()) != null) {
+                        totalBytes.addAndGet(-blobEntry.getValue().size());
+                        evicted += 1;
+                    }
+                    deleteEntries(blobEntry.getKey());
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not evict blob " + blobEntry.getKey(), e);
+                }
+            }
+            logger.info(String.format("Evicted %s blobs from response cache, %s bytes left", evicted, totalBytes.get()));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the entries still pointing at an evicted blob.
+     * An entry replaced since with one pointing at another blob is kept.
+     */
+    private void deleteEntries(String digest) {
+        Set<String> entryNames = entriesByBlob.remove(digest);
+        if (entryNames == null) {
+            return;
+        }
+
+        for (String entryName : entryNames) {
+            Path entryPath = entriesDirectory.resolve(entryName);
+            try {
+                if (digest.equals(readEntry(entryPath).getProperty("blob"))) {
+                    Files.deleteIfExists(entryPath);
+                }
+            } catch (NoSuchFileException e) {
+                // Already removed
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete cache entry " + entryName, e);
+            }
+        }
+    }
+
+    private void loadBlobs() throws IOException {
+        try (Stream<Path> paths = Files.list(blobsDirectory)) {
+            for (Path path : paths.toList()) {
+                if (path.getFileName().toString().endsWith(".tmp")) {
+                    // Left behind by a run that crashed while writing
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                long size = Files.size(path);
+                blobs.put(path.getFileName().toString(), new BlobInfo(size, Files.getLastModifiedTime(path).toMillis()));
+                totalBytes.addAndGet(size);
+            }
+        }
+    }
+
+    /**
+     * Picks up the entries of earlier runs, deleting the ones whose blob is gone
+     * and the temporary files of entries that were never finished.
+     */
+    private void loadEntries() throws IOException {
+        try (Stream<Path> paths = Files.list(entriesDirectory)) {
+            for (Path path : paths.toList()) {
+                String entryName = path.getFileName().toString();
+                if (entryName.endsWith(".tmp")) {
+                    // Left behind by a run that crashed while writing
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+
+                String digest;
+                try {
+                    digest = readEntry(path).getProperty("blob");
+                } catch (IOException | IllegalArgumentException e) {
+                    digest = null;
+                }
+                if (digest == null || !blobs.containsKey(digest)) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                entriesByBlob.computeIfAbsent(digest, key -> ConcurrentHashMap.newKeySet()).add(entryName);
+            }
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package no.jobbscraper.http;
+
+import java.util.Objects;
+
+/**
+ * The cache validators a server sent for a page, used to ask for the page again only if it has changed.
+ *
+ * @param etag          the value of the ETag header, or null if not sent
+ * @param lastModified  the value of the Last-Modified header, or null if not sent
+ */
+public record Validators(String etag, String lastModified) {
+
+    /**
+     * Checks if the server sent any validators at all.
+     *
+     * @return true if there is neither an ETag nor a Last-Modified value
+     */
+    public boolean isEmpty() {
+        return Objects.isNull(etag) && Objects.isNull(lastModified);
+    }
+}
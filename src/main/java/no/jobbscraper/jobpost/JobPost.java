@@ -1,11 +1,19 @@
 package no.jobbscraper.jobpost;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public record JobPost (
         @JsonProperty("url")
@@ -33,15 +41,72 @@ public record JobPost (
         Set<String> tags,
 
         @JsonProperty("job_definitions")
-        Map<String, Set<String>> jobDefinitionMap) {
+        Map<String, Set<String>> jobDefinitionMap,
+
+        @JsonProperty("update")
+        boolean update,
+
+        @JsonProperty("duplicate_of")
+        String duplicateOf) {
+
+    /**
+     * Returns a digest of the content of the job post, which changes when the job post is edited.
+     * The url, the image urls and the update and duplicate tags are left out, and the tags and definitions are sorted,
+     * so the digest is the same on every scrape of an unchanged job post.
+     *
+     * @return the first 64 bits of a SHA-256 hash of the content
+     */
+    @JsonIgnore
+    public long digest() {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder content = new StringBuilder()
+                .append(title).append('\0')
+                .append(companyName).append('\0')
+                .append(description).append('\0')
+                .append(deadline).append('\0')
+                .append(new TreeSet<>(Objects.requireNonNullElse(tags, Set.of()))).append('\0');
+        new TreeMap<>(Objects.requireNonNullElse(jobDefinitionMap, Map.<String, Set<String>>of())).forEach((definition, values) ->
+                content.append(definition).append('=').append(new TreeSet<>(values)).append('\0'));
+
+        byte[] hash = messageDigest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    /**
+     * Returns a copy of the job post flagged as an update of a job post sent before.
+     *
+     * @return the job post with the update flag set
+     */
+    public JobPost asUpdate() {
+        return new JobPost(url, companyName, companyImageUrl, imageUrl, title, description, deadline,
+                tags, jobDefinitionMap, true, duplicateOf);
+    }
+
+    /**
+     * Returns a copy of the job post tagged as the same job as one sent before from another site.
+     *
+     * @param originalJobKey    the source and id of the job post sent before, for example finn:349553613
+     * @return                  the job post with the duplicate tag set
+     */
+    public JobPost asDuplicateOf(String originalJobKey) {
+        return new JobPost(url, companyName, companyImageUrl, imageUrl, title, description, deadline,
+                tags, jobDefinitionMap, update, originalJobKey);
+    }
 
     @Override
     public String toString() {
         int maxDescriptionLength = Math.min(20, description.length());
         return String.format("JobPost{url='%s', companyName='%s', companyImageUrl='%s', imageUrl='%s', title='%s', " +
-                        "description='%s', deadline='%s', tags='%s', jobDefinitionMap='%s'}",
+                        "description='%s', deadline='%s', tags='%s', jobDefinitionMap='%s', update='%s', duplicateOf='%s'}",
                 url, companyName, companyImageUrl, imageUrl, title,
-                description.substring(0, maxDescriptionLength) + "...", deadline, tags, jobDefinitionMap);
+                description.substring(0, maxDescriptionLength) + "...", deadline, tags, jobDefinitionMap, update, duplicateOf);
     }
 
     public static final class Builder {
@@ -95,7 +160,7 @@ public record JobPost (
 
         public JobPost build() {
             return new JobPost(url, companyName, companyImageUrl, imageUrl,
-                    title, description, deadline, tags, definitionMap);
+                    title, description, deadline, tags, definitionMap, false, null);
         }
 
     }
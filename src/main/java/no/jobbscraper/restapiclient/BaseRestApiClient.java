@@ -7,9 +7,15 @@ import no.jobbscraper.argument.Argument;
 import no.jobbscraper.jobpost.JobPost;
 
 import java.net.http.HttpClient;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +25,14 @@ public abstract sealed class BaseRestApiClient implements IRestApiClient permits
     protected static final Logger logger = Logger.getLogger(BaseRestApiClient.class.getName());
     protected static final HttpClient httpClient = HttpClient.newHttpClient();
     protected static final ObjectMapper objectMapper = new ObjectMapper();
+    static final int DEFAULT_MAX_IN_FLIGHT_POSTS = 2;
+    // Lists of job posts waiting to be posted or being posted, before postJobsAsync has to wait
+    static final int POST_QUEUE_CAPACITY = 16;
+    private final Queue<QueuedPost> postQueue = new ArrayDeque<>();
+    private final ReentrantLock postQueueLock = new ReentrantLock();
+    private final Semaphore postQueueSlots = new Semaphore(POST_QUEUE_CAPACITY);
+    private final int maxInFlightPosts;
+    private int inFlightPosts;
     private final String ip;
     private final String port;
     private final String path;
@@ -29,8 +43,17 @@ public abstract sealed class BaseRestApiClient implements IRestApiClient permits
         this.port = port;
         this.path = path;
         this.requestParam = requestParam;
+        this.maxInFlightPosts = DEFAULT_MAX_IN_FLIGHT_POSTS;
     }
 
+    /**
+     * A list of job posts waiting to be posted.
+     *
+     * @param jobPosts  the job posts to post
+     * @param result    completed once the REST API has answered
+     */
+    private record QueuedPost(List<JobPost> jobPosts, CompletableFuture<Boolean> result) {}
+
     public static BaseRestApiClient getInstance(boolean fake) {
         if (Objects.nonNull(instance)) {
             return instance;
@@ -49,9 +72,85 @@ public abstract sealed class BaseRestApiClient implements IRestApiClient permits
         this.port = Argument.getValue(Argument.PORT);
         this.path = Argument.getValue(Argument.PATH);
         this.requestParam = Argument.getValue(Argument.REQUEST_PARAM);
+        this.maxInFlightPosts = Math.max(1,
+                Argument.getIntValue(Argument.MAX_IN_FLIGHT_POSTS, DEFAULT_MAX_IN_FLIGHT_POSTS));
         objectMapper.registerModule(new JavaTimeModule());
     }
 
+    /**
+     * Queues the job posts, and posts them once fewer than the maximum number of posts are in flight.
+     * Posts are started in the order they were queued.
+     */
+    @Override
+    public final CompletableFuture<Boolean> postJobsAsync(List<JobPost> jobPosts) {
+        try {
+            postQueueSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        postQueueLock.lock();
+        try {
+            postQueue.add(new QueuedPost(jobPosts, result));
+        } finally {
+            postQueueLock.unlock();
+        }
+        startQueuedPosts();
+        return result;
+    }
+
+    /**
+     * Sends the job posts without waiting for the REST API to answer.
+     *
+     * @param jobPosts  The list of job posts to be posted.
+     * @return          Completes with {@code true} if the job posts were successfully posted, {@code false} otherwise.
+     */
+    protected abstract CompletableFuture<Boolean> sendJobPostsAsync(List<JobPost> jobPosts);
+
+    /**
+     * Starts queued posts until the maximum number of posts are in flight.
+     * Called again as each post completes, so the queue keeps draining.
+     */
+    private void startQueuedPosts() {
+        List<QueuedPost> postsToStart = new ArrayList<>();
+        postQueueLock.lock();
+        try {
+            while (inFlightPosts < maxInFlightPosts && !postQueue.isEmpty()) {
+                inFlightPosts++;
+                postsToStart.add(postQueue.poll());
+            }
+        } finally {
+            postQueueLock.unlock();
+        }
+
+        for (QueuedPost queuedPost : postsToStart) {
+            CompletableFuture<Boolean> sent;
+            try {
+                sent = sendJobPostsAsync(queuedPost.jobPosts());
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((posted, error) -> {
+                postQueueLock.lock();
+                try {
+                    inFlightPosts--;
+                } finally {
+                    postQueueLock.unlock();
+                }
+                postQueueSlots.release();
+                startQueuedPosts();
+
+                if (Objects.nonNull(error)) {
+                    queuedPost.result().completeExceptionally(error);
+                } else {
+                    queuedPost.result().complete(posted);
+                }
+            });
+        }
+    }
+
     protected String transformJobPostsToString(List<JobPost> jobPosts)  {
         StringJoiner jsonString = new StringJoiner(",");
         for (JobPost jobPost : jobPosts) {
@@ -3,16 +3,31 @@ package no.jobbscraper.restapiclient;
 import no.jobbscraper.jobpost.JobPost;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public final class FakeRestApiClient extends BaseRestApiClient {
 
+    private final Function<List<JobPost>, CompletableFuture<Boolean>> sender;
+
     // TODO Implement test
     public FakeRestApiClient() {
+        this(jobPosts -> CompletableFuture.completedFuture(false));
+    }
+
+    /**
+     * Constructs a FakeRestApiClient that answers each post with the given sender,
+     * for example to stand in for a slow or failing REST API.
+     *
+     * @param sender    Returns the answer of the REST API to a list of job posts.
+     */
+    public FakeRestApiClient(Function<List<JobPost>, CompletableFuture<Boolean>> sender) {
         super("local", "local", "local", "local");
+        this.sender = sender;
     }
 
     @Override
-    public boolean tryToPostJobs(List<JobPost> jobPosts) {
-        return false;
+    protected CompletableFuture<Boolean> sendJobPostsAsync(List<JobPost> jobPosts) {
+        return sender.apply(jobPosts);
     }
 }
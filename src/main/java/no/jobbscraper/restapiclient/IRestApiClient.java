@@ -3,15 +3,18 @@ package no.jobbscraper.restapiclient;
 import no.jobbscraper.jobpost.JobPost;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 sealed interface IRestApiClient permits BaseRestApiClient {
 
     /**
-     * Attempts to post a list of job posts to a REST API.
+     * Queues a list of job posts to be posted to a REST API, without waiting for the REST API to answer.
+     * Waits for room if the queue is full, so a slow REST API slows the scrapers down instead of filling the memory.
      *
      * @param jobPosts          The list of job posts to be posted.
-     * @return {@code true}     if the job posts were successfully posted; {@code false} otherwise.
+     * @return                  Completes with {@code true} if the job posts were successfully posted, {@code false}
+     *                          otherwise, or exceptionally if the REST API could not be reached.
      */
-    boolean tryToPostJobs(List<JobPost> jobPosts);
+    CompletableFuture<Boolean> postJobsAsync(List<JobPost> jobPosts);
 
 }
@@ -3,39 +3,34 @@ package no.jobbscraper.restapiclient;
 import no.jobbscraper.argument.Argument;
 import no.jobbscraper.jobpost.JobPost;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 public final class RestApiClient extends BaseRestApiClient {
 
     @Override
-    public boolean tryToPostJobs(List<JobPost> jobPosts) {
+    protected CompletableFuture<Boolean> sendJobPostsAsync(List<JobPost> jobPosts) {
         boolean disableRestClient = Objects.equals(Argument.getValue(Argument.DISABLE_REST_CLIENT), "yes");
         if (disableRestClient) {
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
-        String data = transformJobPostsToString(jobPosts);
-        HttpRequest request = getHttpRequest(data);
-        return sendRequest(request, jobPosts.size());
+        HttpRequest request = getHttpRequest(transformJobPostsToString(jobPosts));
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> isPosted(response, jobPosts.size()));
     }
 
-    private boolean sendRequest(HttpRequest request, int jobPostSize){
-        try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                logger.info("Successfully posted " + jobPostSize + " job posts!");
-                return true;
-            }
-
-            logger.severe("Posting " + jobPostSize + " returned status code "
-                    + response.statusCode() + ", message: " + response.body());
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
+    private boolean isPosted(HttpResponse<String> response, int jobPostSize) {
+        if (response.statusCode() == 200) {
+            logger.info("Successfully posted " + jobPostSize + " job posts!");
+            return true;
         }
+
+        logger.severe("Posting " + jobPostSize + " returned status code "
+                + response.statusCode() + ", message: " + response.body());
         return false;
     }
 
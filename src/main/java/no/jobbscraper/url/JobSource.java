@@ -0,0 +1,130 @@
+package no.jobbscraper.url;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public enum JobSource {
+
+    // https://www.finn.no/job/fulltime/ad.html?finnkode=123, https://www.finn.no/job/ad/123 or https://www.finn.no/123
+    FINN("finn", "finn.no", Pattern.compile("[?&]finnkode=(\\d+)|^/(?:job/ad/)?(\\d+)(?:[/?#]|$)")),
+    // https://karrierestart.no/ledig-stilling/123
+    KARRIERESTART("karrierestart", "karrierestart.no", Pattern.compile("/ledig-stilling/(\\d+)")),
+    // https://arbeidsplassen.nav.no/stillinger/stilling/0b5c0d6e-...
+    ARBEIDSPLASSEN_NAV("nav", "arbeidsplassen.nav.no",
+            Pattern.compile("/stilling/([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})")),
+    ;
+
+    private final String name;
+    private final String domain;
+    private final Pattern idPattern;
+
+    /**
+     * Constructs a JobSource.
+     *
+     * @param name      the name of the scraper of the website
+     * @param domain    the domain of the website, subdomains included
+     * @param idPattern matches the id of a job post in the path and query of its url, in the first group that matched
+     */
+    JobSource(String name, String domain, Pattern idPattern) {
+        this.name = name;
+        this.domain = domain;
+        this.idPattern = idPattern;
+    }
+
+    /**
+     * Returns a key identifying the job post of the url, the same for every url linking to the same job post.
+     * Tracking parameters, host aliases and different url forms of a job post give the same key.
+     *
+     * @param url   The url of a job post.
+     * @return      The name of the source and the id of the job post, for example finn:349553613,
+     *              or the url itself if the id could not be found.
+     */
+    public static String keyOf(String url) {
+        URI uri = parse(url);
+        if (Objects.isNull(uri)) {
+            return url;
+        }
+
+        return Arrays.stream(values())
+                .filter(source -> source.isHostOf(uri))
+                .findFirst()
+                .flatMap(source -> source.extractId(uri).map(id -> source.name + ":" + id))
+                .orElse(url);
+    }
+
+    /**
+     * Returns the name of the website of the url, also if the id of its job post could not be found.
+     *
+     * @param url   The url of a job post.
+     * @return      The name of the source, for example finn, the host if the url is not of a known website,
+     *              or the url itself if it has no host.
+     */
+    public static String sourceOf(String url) {
+        URI uri = parse(url);
+        if (Objects.isNull(uri) || Objects.isNull(uri.getHost())) {
+            return url;
+        }
+
+        return Arrays.stream(values())
+                .filter(source -> source.isHostOf(uri))
+                .findFirst()
+                .map(source -> source.name)
+                .orElse(uri.getHost().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Extracts the id of the job post from a url of this website.
+     *
+     * @param url   The url of a job post.
+     * @return      The id, or empty if the url is not a job post of this website.
+     */
+    public Optional<String> extractId(String url) {
+        URI uri = parse(url);
+        if (Objects.isNull(uri) || !isHostOf(uri)) {
+            return Optional.empty();
+        }
+        return extractId(uri);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private Optional<String> extractId(URI uri) {
+        String pathAndQuery = Objects.requireNonNullElse(uri.getRawPath(), "") +
+                (Objects.isNull(uri.getRawQuery()) ? "" : "?" + uri.getRawQuery());
+        Matcher matcher = idPattern.matcher(pathAndQuery);
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+        for (int group = 1; group <= matcher.groupCount(); group++) {
+            if (Objects.nonNull(matcher.group(group))) {
+                return Optional.of(matcher.group(group).toLowerCase(Locale.ROOT));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean isHostOf(URI uri) {
+        String host = uri.getHost();
+        if (Objects.isNull(host)) {
+            return false;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        return host.equals(domain) || host.endsWith("." + domain);
+    }
+
+    private static URI parse(String url) {
+        try {
+            return new URI(url.strip());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
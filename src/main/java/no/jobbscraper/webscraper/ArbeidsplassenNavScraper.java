@@ -1,5 +1,6 @@
 package no.jobbscraper.webscraper;
 
+import no.jobbscraper.argument.Argument;
 import no.jobbscraper.url.WebsiteURL;
 import no.jobbscraper.utils.DateUtils;
 import no.jobbscraper.utils.ElementSearchQuery;
@@ -31,12 +32,70 @@ public final class ArbeidsplassenNavScraper extends BaseWebScraper {
      */
     @Override
     public int getPage() {
-        return super.getPage() * elementsPerPage;
+        return getPageQuery(super.getPage());
+    }
+
+    @Override
+    protected int getPageQuery(int page) {
+        return page * elementsPerPage;
+    }
+
+    @Override
+    protected Argument getRateLimitArgument() {
+        return Argument.NAV_RATE_LIMIT;
+    }
+
+    /**
+     * Sets the max page from the number of hits shown on the list page,
+     * so the pages can be split between crawl workers.
+     */
+    @Override
+    protected void setMaxPage() {
+        Document doc = this.getListDocument(getCurrentUrl());
+        if (Objects.isNull(doc)) {
+            logger.severe("Could not setup max page for nav, the list page could not be fetched");
+            return;
+        }
+
+        int maxPage = extractMaxPageFromDoc(doc);
+        if (maxPage <= 0) {
+            logger.severe("Could not setup max page. " + doc.location());
+            return;
+        }
+
+        setMaxPage(maxPage);
+        logger.info("Set max page for nav to " + maxPage);
+    }
+
+    /**
+     * Extracts the last page from the number of hits shown on a list page.
+     * Page p starts at offset p * 25, so the last page is the last one starting before the number of hits.
+     *
+     * @param doc   The HTML document of a list page.
+     * @return      The last page, or 0 if the number of hits was not found.
+     */
+    int extractMaxPageFromDoc(Document doc) {
+        Element hitsElement = getElementFromXPath(doc, "//h2[@aria-live='polite']/span");
+        if (Objects.isNull(hitsElement)) {
+            return 0;
+        }
+
+        String hits = hitsElement.text().replaceAll("\\D", "");
+        if (StringUtils.isEmpty(hits)) {
+            return 0;
+        }
+        return Math.max(1, (Integer.parseInt(hits) - 1) / elementsPerPage);
+    }
+
+    @Override
+    protected String getDetailPageEndMarker() {
+        return "</article>";
     }
 
     @Override
     String extractUrlForJobPostFromElement(String url, Element element) {
-        String XPath = "//a[@class='navds-link purple-when-visited navds-link--action']";
+        // Relative to the element, "//" alone would search the whole document
+        String XPath = ".//a[@class='navds-link purple-when-visited navds-link--action']";
         ElementSearchQuery searchQuery = new ElementSearchQuery.Builder(url, element)
                 .setXPath(XPath)
                 .attributeToReturn("abs:href")
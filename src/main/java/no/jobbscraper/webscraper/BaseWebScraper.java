@@ -2,18 +2,43 @@ package no.jobbscraper.webscraper;
 
 import no.jobbscraper.argument.Argument;
 import no.jobbscraper.database.Database;
+import no.jobbscraper.database.SeenUrl;
+import no.jobbscraper.http.Backoff;
+import no.jobbscraper.http.CircuitBreaker;
+import no.jobbscraper.http.FetchResult;
+import no.jobbscraper.http.HttpResponseException;
+import no.jobbscraper.http.HttpTransport;
+import no.jobbscraper.http.IBodyParser;
+import no.jobbscraper.http.RateLimiter;
+import no.jobbscraper.http.Validators;
 import no.jobbscraper.jobpost.JobPost;
 import no.jobbscraper.restapiclient.BaseRestApiClient;
+import no.jobbscraper.url.JobSource;
 import no.jobbscraper.url.WebsiteURL;
 import no.jobbscraper.utils.StringUtils;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,19 +79,42 @@ public sealed abstract class BaseWebScraper
     );
 
     protected static final Logger logger = Logger.getLogger(BaseWebScraper.class.getName());
-    protected static final BaseRestApiClient apiClient = BaseRestApiClient.getInstance(false);
+    // Runs the database work after each post, which can wait for the database lock and the seen url writer,
+    // so it never holds up the threads of the REST client handling the responses
+    private static final ExecutorService postCompletionExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private final static int CONNECT_TRIES = 3;
-    private final static int WAIT_BEFORE_RECONNECT_MILLIS = 5000;
     private final static int ALLOWED_FAILED_ATTEMPTS = 5;
+    private final static int DEFAULT_MAX_CONCURRENT_FETCHES = 4;
+    private final static String DEFAULT_RATE_LIMIT = "4:8";
+    private final static int DEFAULT_LIST_PAGE_CACHE_TTL_MINUTES = 30;
+    private final static int DEFAULT_DETAIL_PAGE_CACHE_TTL_MINUTES = 1440;
+    private final static int DEFAULT_PREFETCH_PAGES = 1;
+    private final static String DEFAULT_DUPLICATES = "tag";
+    private final static int DEFAULT_CRAWL_WORKERS = 1;
+    private final static int STREAMED_SEEN_CHECK_BATCH_SIZE = 8;
     private final String name;
     private final String url;
     private final String urlWithPageQuery;
     private final String XPath;
     private final String fullIp;
-    private int failedAttempts;
+    private BaseRestApiClient apiClient;
+    private final Semaphore fetchPermits;
+    private final Duration listPageCacheTtl;
+    private final Duration detailPageCacheTtl;
+    private final StreamingCardParser streamingCardParser;
+    private final EarlyExitDocumentParser detailPageParser;
+    private final int prefetchPages;
+    private final boolean revisitsEnabled;
+    // What to do with job posts sent before from another site, tag, suppress or off
+    private final String duplicates;
+    private final AtomicInteger failedAttempts;
+    // The job keys of job posts waiting for the REST API to answer, so they are not built again meanwhile
+    private final Set<String> postingJobKeys;
+    private final Queue<CompletableFuture<Void>> pendingPosts;
+    // The page the scan starts at, each crawl worker keeps its own position in a PageCursor
     private int page;
     private int maxPage;
-    private boolean continueScan;
+    private volatile boolean continueScan;
 
     /**
      * Constructs a BaseWebScraper object with the specified WebsiteURL.
@@ -83,7 +131,22 @@ public sealed abstract class BaseWebScraper
         this.XPath = XPath;
         this.fullIp = Argument.getValue(Argument.IP) +
                 (Argument.getValue(Argument.PORT) == null ? "" : ":" + Argument.getValue(Argument.PORT));
-        this.failedAttempts = 0;
+        this.fetchPermits = new Semaphore(
+                Argument.getIntValue(Argument.MAX_CONCURRENT_FETCHES, DEFAULT_MAX_CONCURRENT_FETCHES));
+        this.listPageCacheTtl = Duration.ofMinutes(
+                Argument.getIntValue(Argument.CACHE_LIST_TTL, DEFAULT_LIST_PAGE_CACHE_TTL_MINUTES));
+        this.detailPageCacheTtl = Duration.ofMinutes(
+                Argument.getIntValue(Argument.CACHE_DETAIL_TTL, DEFAULT_DETAIL_PAGE_CACHE_TTL_MINUTES));
+        this.streamingCardParser = createStreamingCardParser();
+        this.detailPageParser = createDetailPageParser();
+        this.prefetchPages = Argument.getIntValue(Argument.PREFETCH_PAGES, DEFAULT_PREFETCH_PAGES);
+        this.revisitsEnabled = Objects.nonNull(Argument.getValue(Argument.REVISIT_INTERVAL));
+        this.duplicates = Objects.requireNonNullElse(Argument.getValue(Argument.DUPLICATES), DEFAULT_DUPLICATES);
+        setUpRateLimiter();
+        this.failedAttempts = new AtomicInteger();
+        this.apiClient = BaseRestApiClient.getInstance(false);
+        this.postingJobKeys = ConcurrentHashMap.newKeySet();
+        this.pendingPosts = new ConcurrentLinkedQueue<>();
         this.page = 1;
         this.maxPage = 0;
         this.continueScan = true;
@@ -100,9 +163,75 @@ public sealed abstract class BaseWebScraper
         // Check if page argument was provided
         setStartPageFromArgument();
 
-        while (continueScan()) {
-            scrape(getCurrentUrl());
-            setPage(page + 1);
+        int crawlWorkers = Argument.getIntValue(Argument.CRAWL_WORKERS, DEFAULT_CRAWL_WORKERS);
+        if (crawlWorkers > 1 && getMaxPage() <= 0) {
+            setMaxPage();
+        }
+
+        if (crawlWorkers > 1 && getMaxPage() > 0) {
+            crawlInParallel(crawlWorkers);
+        } else {
+            crawl(new PageCursor(page, getMaxPage() > 0 ? getMaxPage() : Integer.MAX_VALUE));
+        }
+        awaitPendingPosts();
+
+        CircuitBreaker circuitBreaker = HttpTransport.forUrl(this.url).getCircuitBreaker();
+        logger.info("[" + this.name + "] Finished scanning, " + circuitBreaker.getStatistics() +
+                ", " + Database.getWriteQueueDepth() + " scraped urls waiting to be written");
+    }
+
+    /**
+     * Splits the pages from the start page to the max page into ranges, and crawls each range on its own virtual thread.
+     * The workers share the failure accounting, so the scan stops for all of them once it stops for one.
+     *
+     * @param crawlWorkers the number of workers to crawl with
+     */
+    private void crawlInParallel(int crawlWorkers) {
+        List<PageCursor> cursors = PageCursor.split(page, getMaxPage(), crawlWorkers);
+        logger.info(String.format("[%s] Crawling pages %s to %s with %s workers",
+                this.name, page, getMaxPage(), cursors.size()));
+
+        List<Future<?>> workers = new ArrayList<>();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            cursors.forEach(cursor -> workers.add(executorService.submit(() -> crawl(cursor))));
+        }
+
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.log(Level.SEVERE, "[" + this.name + "] Crawl worker failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Scrapes the pages of the given cursor in order, until the cursor is past its last page or the scan is stopped.
+     *
+     * @param cursor the cursor over the pages to scrape
+     */
+    private void crawl(PageCursor cursor) {
+        CircuitBreaker circuitBreaker = HttpTransport.forUrl(this.url).getCircuitBreaker();
+        try (ListPagePrefetcher prefetcher = new ListPagePrefetcher()) {
+            while (continueScan() && cursor.hasPage()) {
+                int currentPage = cursor.getPage();
+                String currentUrl = getUrlForPage(currentPage);
+
+                // Fetch the next list pages while the job posts on this one are built
+                prefetcher.prefetchAfter(currentPage, cursor.getLastPage());
+                scrape(currentUrl, prefetcher.take(currentPage));
+
+                // Scrape the same page again once the host is back
+                if (circuitBreaker.isOpen()) {
+                    handleFailedAttempt();
+                    waitForCircuitBreaker(circuitBreaker, currentUrl);
+                    continue;
+                }
+                cursor.advance();
+            }
         }
     }
 
@@ -114,6 +243,22 @@ public sealed abstract class BaseWebScraper
         return this.url;
     }
 
+    /**
+     * Returns the ip and port of the REST API the job posts are sent to, as the scraped urls are stored under it.
+     * @return the ip and port of the REST API
+     */
+    String getFullIp() {
+        return this.fullIp;
+    }
+
+    /**
+     * Replaces the client the job posts are sent with. Must be called before the scan starts.
+     * @param apiClient the client to send the job posts with
+     */
+    void setApiClient(BaseRestApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
     /**
      * Retrieves the URL associated with the current page.
      * If the page is the first page, returns the original URL.
@@ -122,10 +267,43 @@ public sealed abstract class BaseWebScraper
      * @return The URL for the current page.
      */
     protected String getCurrentUrl() {
-        if (isOnFirstPage()) {
-            return String.format(url, getPage());
+        return getUrlForPage(page);
+    }
+
+    /**
+     * Retrieves the URL associated with the given page.
+     * If the page is the first page, returns the original URL.
+     * Otherwise, returns the URL with the page query parameter appended.
+     *
+     * @param page  the page to get the URL for
+     * @return      The URL for the given page.
+     */
+    protected String getUrlForPage(int page) {
+        if (page == 1) {
+            return String.format(url, getPageQuery(page));
         }
-        return String.format(urlWithPageQuery, getPage());
+        return String.format(urlWithPageQuery, getPageQuery(page));
+    }
+
+    /**
+     * Returns the value of the page query parameter for the given page.
+     *
+     * @param page  the page to get the query value for
+     * @return      the value of the page query parameter
+     */
+    protected int getPageQuery(int page) {
+        return page;
+    }
+
+    /**
+     * Checks if the given page is within the pagination of the website.
+     * If the max page is not known, every page is assumed to exist.
+     *
+     * @param page  the page to check
+     * @return      true if the page can exist
+     */
+    protected boolean isPageInRange(int page) {
+        return maxPage <= 0 || page <= maxPage;
     }
 
     /**
@@ -147,43 +325,160 @@ public sealed abstract class BaseWebScraper
     protected void setMaxPage(){}
 
     /**
-     * Retrieves and returns the HTML document of a webpage using Jsoup.
+     * Retrieves and returns the HTML document of a webpage using the pooled {@link HttpTransport} for its host.
+     * Failed attempts are retried with exponential backoff, honouring Retry-After if the server sends it.
+     * If the {@link CircuitBreaker} of the host is open, the fetch fails fast instead.
      *
      * @param url   the url to scrape
      * @return      the {@link Document} HTML document of the webpage
      * @see         Document
      */
     protected Document getDocument(String url) {
-        Document doc = null;
+        FetchResult<Document> result = fetch(url, null, IBodyParser.DOCUMENT);
+        return Objects.isNull(result) ? null : result.content();
+    }
+
+    /**
+     * Retrieves and returns the HTML document of a list page, stopping the scan if it could not be fetched.
+     *
+     * @param url   the url of the list page
+     * @return      the {@link Document} HTML document of the list page, or null if it could not be fetched
+     * @see         #fetchListPage(String, Validators, IBodyParser)
+     */
+    protected Document getListDocument(String url) {
+        FetchResult<Document> result = fetchListPage(url, null, IBodyParser.DOCUMENT);
+        return Objects.isNull(result) ? null : result.content();
+    }
+
+    /**
+     * Retrieves and returns the HTML document of a detail page.
+     * If streaming is enabled, only the part of the page up to {@link #getDetailPageEndMarker()}
+     * is downloaded and parsed, as long as every required field is in that part.
+     *
+     * @param url   the url of the detail page
+     * @return      the {@link Document} HTML document of the detail page, possibly cut off after the job post
+     */
+    protected Document getDetailDocument(String url) {
+        if (Objects.isNull(detailPageParser)) {
+            return getDocument(url);
+        }
+        FetchResult<Document> result = fetch(url, null, detailPageParser);
+        return Objects.isNull(result) ? null : result.content();
+    }
+
+    /**
+     * Fetches a webpage using the pooled {@link HttpTransport} for its host, conditionally if validators are given.
+     * Failed attempts are retried with exponential backoff, honouring Retry-After if the server sends it.
+     * If the {@link CircuitBreaker} of the host is open, the fetch fails fast instead.
+     * List pages are fetched with {@link #fetchListPage(String, Validators, IBodyParser)} instead.
+     *
+     * @param url           the url to scrape
+     * @param validators    the validators from the last complete scrape of the url, or null to fetch unconditionally
+     * @param parser        the parser to parse the webpage with
+     * @param <T>           the type the webpage is parsed into
+     * @return              the {@link FetchResult} of the webpage, or null if it could not be fetched
+     */
+    protected <T> FetchResult<T> fetch(String url, Validators validators, IBodyParser<T> parser) {
+        return fetchWithRetries(url, validators, detailPageCacheTtl, parser);
+    }
+
+    /**
+     * Fetches a list page, stopping the scan if it could not be fetched.
+     * List pages change far more often than detail pages, so cached copies are revalidated sooner.
+     *
+     * @param url           the url of the list page
+     * @param validators    the validators from the last complete scrape of the url, or null to fetch unconditionally
+     * @param parser        the parser to parse the list page with
+     * @param <T>           the type the list page is parsed into
+     * @return              the {@link FetchResult} of the list page, or null if it could not be fetched
+     */
+    private <T> FetchResult<T> fetchListPage(String url, Validators validators, IBodyParser<T> parser) {
+        FetchResult<T> result = fetchWithRetries(url, validators, listPageCacheTtl, parser);
+
+        // Only stop scan if url is main and not a "detail page"
+        if (Objects.isNull(result)) {
+            // An open breaker is handled by the scan loop, which waits for the cool-down
+            if (HttpTransport.forUrl(url).getCircuitBreaker().isOpen()) {
+                return null;
+            }
+            continueScan = false;
+            logger.warning( "Stopping scan after " + CONNECT_TRIES + " tries for " + this.name);
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Fetches a webpage, retrying failed attempts with backoff while the {@link CircuitBreaker} of the host allows it.
+     *
+     * @param url           the url to scrape
+     * @param validators    the validators from the last complete scrape of the url, or null to fetch unconditionally
+     * @param cacheTtl      how long a cached copy of the url may be used before it is revalidated
+     * @param parser        the parser to parse the webpage with
+     * @param <T>           the type the webpage is parsed into
+     * @return              the {@link FetchResult} of the webpage, or null if it could not be fetched
+     */
+    private <T> FetchResult<T> fetchWithRetries(String url, Validators validators, Duration cacheTtl, IBodyParser<T> parser) {
+        FetchResult<T> result = null;
+        HttpTransport transport = HttpTransport.forUrl(url);
+        CircuitBreaker circuitBreaker = transport.getCircuitBreaker();
 
         for (int tries = 1; tries <= CONNECT_TRIES; tries++) {
+            if (!circuitBreaker.allowRequest()) {
+                logger.warning("Skipping " + url + " because the circuit breaker for " + transport.getHost() + " is open");
+                break;
+            }
+
             try {
-                doc = Jsoup.connect(url)
-                        .userAgent("Mozilla/5.0 (Linux; Android 6.0; Nexus 5 Build/MRA58N) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/123.0.0.0 Mobile Safari/537.36")
-                        .header("Accept-Language", "nb-NO,nb;q=0.9")
-                        .header("Accept-Encoding", "gzip, deflate, br, zstd")
-                        .timeout(10000)
-                        .get();
+                result = transport.fetch(url, validators, cacheTtl, parser);
+                circuitBreaker.recordSuccess();
                 break; // Break if successful
-            } catch (IOException ie) {
-                try {
-                    // Sleep a bit
-                    Thread.sleep(WAIT_BEFORE_RECONNECT_MILLIS);
-                } catch (InterruptedException e) {
-                    logger.log(Level.SEVERE, "Could not sleep thread...", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                circuitBreaker.releaseProbe();
+                logger.warning("Interrupted while getting document for " + url);
+                break;
+            } catch (HttpResponseException e) {
+                if (!e.isRetryable()) {
+                    // The host answered, so it is up even if the page is not
+                    circuitBreaker.recordSuccess();
+                    logger.warning("Could not get document for " + url + ". Status=" + e.getStatusCode());
+                    break;
                 }
+                circuitBreaker.recordFailure();
+                logger.log(Level.WARNING, "Could not get document for " + url + ". Tries=" + tries, e);
+                waitBeforeReconnect(tries, e.getRetryAfter().orElse(null));
+            } catch (IOException ie) {
+                circuitBreaker.recordFailure();
                 logger.log(Level.WARNING, "Could not get document for " + url + ". Tries=" + tries, ie);
+                waitBeforeReconnect(tries, null);
+            } catch (RuntimeException e) {
+                circuitBreaker.releaseProbe();
+                throw e;
             }
         }
 
-        // Only stop scan if url is main and not a "detail page"
-        if (Objects.isNull(doc) && url.equalsIgnoreCase(getCurrentUrl())) {
-            continueScan = false;
-            logger.warning( "Stopping scan after " + CONNECT_TRIES + " tries for " + this.name);
-            return null;
+        return result;
+    }
+
+    /**
+     * Sleeps before the next attempt, unless the last attempt was the final one.
+     *
+     * @param tries         the number of attempts made so far
+     * @param retryAfter    the delay asked for by the server, or null if not given
+     */
+    private void waitBeforeReconnect(int tries, Duration retryAfter) {
+        if (tries >= CONNECT_TRIES) {
+            return;
         }
 
-        return doc;
+        try {
+            Thread.sleep(Backoff.delay(tries, retryAfter));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.SEVERE, "Could not sleep thread...", e.getMessage());
+        }
     }
 
     /**
@@ -245,6 +540,15 @@ public sealed abstract class BaseWebScraper
         return value;
     }
 
+    /**
+     * Returns the XPath to the "job posting cards".
+     *
+     * @return the XPath to the job post elements
+     */
+    String getXPath() {
+        return XPath;
+    }
+
     /**
      * Extracts job post elements from the given document using XPath.
      *
@@ -258,55 +562,467 @@ public sealed abstract class BaseWebScraper
 
     /**
      * Scrapes data from a website.
+     * The page is fetched conditionally, and skipped if it has not changed since it was last scraped in full.
+     * With revisits enabled the page is always parsed, see {@link #conditionalValidatorsFor(Validators)}.
+     * Each job post is built on its own virtual thread as soon as its element has been extracted.
+     * If the page was prefetched, the prefetched copy is used instead of fetching the page again.
+     * The job posts are queued to be posted, and the page is remembered once the REST API has answered,
+     * so the next page is scraped while the job posts of this one are being posted.
      *
-     * @param url url to scrape
+     * @param url           url to scrape
+     * @param prefetched    the prefetched page, or null if it has to be fetched
      */
-    private void scrape(String url) {
+    private void scrape(String url, FetchResult<PrefetchedPage> prefetched) {
         logger.info("Scraping " + url);
 
-        Document doc = getDocument(url);
-        if (Objects.isNull(doc)) {
-            logger.info("Returning because doc returned null from " + url);
-            return;
+        Validators storedValidators = Database.findValidators(url);
+
+        try (JobPostCollector collector = new JobPostCollector(url)) {
+            IBodyParser<Integer> parser = (body, charset, location) -> {
+                collector.startAttempt();
+                if (Objects.nonNull(streamingCardParser)) {
+                    streamingCardParser.parse(body, charset, location, collector::add);
+                } else {
+                    extractJobPostElements(IBodyParser.DOCUMENT.parse(body, charset, location)).forEach(collector::add);
+                }
+                collector.flush();
+                return collector.size();
+            };
+
+            FetchResult<Integer> result = parsePrefetchedPage(url, prefetched, parser);
+            if (Objects.isNull(result)) {
+                result = fetchListPage(url, conditionalValidatorsFor(storedValidators), parser);
+            }
+
+            if (Objects.isNull(result)) {
+                logger.info("Returning because doc returned null from " + url);
+                collector.cancel();
+                return;
+            }
+
+            if (result.isNotModified()) {
+                logger.info("Skipping " + url + " since it has not changed since it was last scraped");
+                return;
+            }
+
+            if (collector.size() == 0) {
+                logger.warning("Got no job post elements from " + url);
+                handleFailedAttempt();
+                return;
+            }
+
+            if (collector.isFullySeen()) {
+                logger.info("All " + collector.size() + " job posts on " + url + " were scraped before");
+                rememberPage(url, storedValidators, result.validators(), true);
+                return;
+            }
+
+            List<JobPost> jobPosts = collector.collect();
+            boolean allJobPostsBuilt = collector.allJobPostsBuilt();
+
+            if (jobPosts.isEmpty()) {
+                logger.warning("JobPosts from " + url + " was empty...");
+                rememberPage(url, storedValidators, result.validators(), allJobPostsBuilt);
+                return;
+            }
+
+            logJobPostStatistics(collector.size(), jobPosts.size());
+
+            jobPosts = handleDuplicates(jobPosts);
+            Validators newValidators = result.validators();
+            if (jobPosts.isEmpty()) {
+                rememberPage(url, storedValidators, newValidators, allJobPostsBuilt);
+                return;
+            }
+            sendJobPostsLater(jobPosts, sent -> rememberPage(url, storedValidators, newValidators, allJobPostsBuilt && sent));
         }
+    }
 
-        Elements jobPostElements = extractJobPostElements(doc);
-        if (jobPostElements.isEmpty()) {
-            logger.warning("Got no job post elements from " + url);
-            handleFailedAttempt();
-            return;
+    /**
+     * Returns the validators to fetch a list page conditionally with.
+     * With revisits enabled the list page is fetched unconditionally, so it is parsed even if it has not changed,
+     * as the job posts it links to may still be due for a revisit. A fresh cached copy is parsed instead of skipped too.
+     *
+     * @param storedValidators  The validators stored for the page, or null if none.
+     * @return                  The validators to send, or null to fetch the page unconditionally.
+     */
+    private Validators conditionalValidatorsFor(Validators storedValidators) {
+        return revisitsEnabled ? null : storedValidators;
+    }
+
+    /**
+     * Parses a prefetched list page as if it had just been fetched.
+     *
+     * @param url           The URL of the list page.
+     * @param prefetched    The prefetched page, or null if it was not prefetched.
+     * @param parser        The parser to parse the page with.
+     * @return              The result of parsing the page, or null if it has to be fetched.
+     */
+    private FetchResult<Integer> parsePrefetchedPage(String url, FetchResult<PrefetchedPage> prefetched, IBodyParser<Integer> parser) {
+        if (Objects.isNull(prefetched)) {
+            return null;
+        }
+        if (prefetched.isNotModified()) {
+            return FetchResult.notModified(prefetched.validators());
         }
 
-        List<JobPost> jobPosts = buildJobPosts(url, jobPostElements);
+        PrefetchedPage prefetchedPage = prefetched.content();
+        try {
+            Integer content = parser.parse(new ByteArrayInputStream(prefetchedPage.body()),
+                    prefetchedPage.charset(), prefetchedPage.location());
+            return new FetchResult<>(content, prefetched.validators());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not parse prefetched page " + url + ", fetching it again", e);
+            return null;
+        }
+    }
 
-        if (jobPosts.isEmpty()) {
-            logger.warning("JobPosts from buildJobPosts was empty...");
-            return;
+    /**
+     * A list page downloaded ahead of time, kept unparsed until it is scraped.
+     *
+     * @param body      the decoded body of the page
+     * @param charset   the charset from the Content-Type header, or null if not given
+     * @param location  the final url of the page after redirects
+     */
+    private record PrefetchedPage(byte[] body, String charset, String location) {}
+
+    /**
+     * Fetches the list pages after the page being scraped, up to {@link Argument#PREFETCH_PAGES} pages ahead,
+     * so the next page is ready once the job posts on the current one have been built.
+     * Each page is fetched on its own virtual thread. A page that could not be prefetched
+     * is fetched again when it is scraped, so failures are handled by the scan as usual.
+     */
+    private final class ListPagePrefetcher implements AutoCloseable {
+
+        private final ExecutorService executorService;
+        private final Map<Integer, Future<FetchResult<PrefetchedPage>>> pages;
+
+        ListPagePrefetcher() {
+            this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+            this.pages = new HashMap<>();
+        }
+
+        /**
+         * Starts fetching the pages after the given page that are not being fetched already.
+         * Pages before the given page are no longer needed and are cancelled.
+         *
+         * @param currentPage   the page being scraped
+         * @param lastPage      the last page to fetch
+         */
+        void prefetchAfter(int currentPage, int lastPage) {
+            pages.entrySet().removeIf(pageEntry -> {
+                boolean passed = pageEntry.getKey() < currentPage;
+                if (passed) {
+                    pageEntry.getValue().cancel(true);
+                }
+                return passed;
+            });
+
+            int lastPrefetchedPage = Math.min(lastPage, currentPage + prefetchPages);
+            for (int next = currentPage + 1; next <= lastPrefetchedPage && isPageInRange(next); next++) {
+                String nextUrl = getUrlForPage(next);
+                pages.computeIfAbsent(next, key -> executorService.submit(() -> prefetch(nextUrl)));
+            }
+        }
+
+        /**
+         * Takes the given page, waiting for it if it is still being fetched.
+         *
+         * @param page  the page to take
+         * @return      the prefetched page, or null if it was not prefetched or could not be fetched
+         */
+        FetchResult<PrefetchedPage> take(int page) {
+            Future<FetchResult<PrefetchedPage>> future = pages.remove(page);
+            if (Objects.isNull(future)) {
+                return null;
+            }
+
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                setContinueScan(false);
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                logger.log(Level.WARNING, "Could not prefetch page " + page + " for " + name, e);
+                return null;
+            }
         }
 
-        logJobPostStatistics(jobPostElements.size(), jobPosts.size());
+        private FetchResult<PrefetchedPage> prefetch(String pageUrl) {
+            return fetchWithRetries(pageUrl, conditionalValidatorsFor(Database.findValidators(pageUrl)), listPageCacheTtl,
+                    (body, charset, location) -> new PrefetchedPage(body.readAllBytes(), charset, location));
+        }
 
-        tryToSendJobPosts(jobPosts);
+        /**
+         * Stops fetching ahead, for when the scan has ended.
+         */
+        @Override
+        public void close() {
+            executorService.shutdownNow();
+            executorService.close();
+        }
     }
 
     /**
-     * Builds a list of valid job posts from the given job post elements.
+     * Stores the validators of a list page once every job post on it has been handled,
+     * so the page can be skipped while it stays unchanged. If the page was only partly
+     * handled, old validators are removed so the page is scraped in full next time.
      *
-     * @param url               The URL of the webpage from which the job post elements were extracted.
-     * @param jobPostElements   The job post elements to be processed.
-     * @return                  A list of valid job posts.
+     * @param url               The URL of the list page.
+     * @param storedValidators  The validators stored for the page before this scrape, or null if none.
+     * @param newValidators     The validators sent by the server for the page.
+     * @param complete          Whether every job post on the page was either seen before or sent.
      */
-    private List<JobPost> buildJobPosts(String url, Elements jobPostElements) {
-        return jobPostElements.stream()
-                .map(jobPostElement -> buildJobPost(url, jobPostElement))
-                .filter(Objects::nonNull)
-                .peek(jobPost -> {
-                    String debugArgument = Argument.getValue(Argument.DEBUG);
-                    if (debugArgument != null && debugArgument.equalsIgnoreCase("yes")){
-                       logger.info(jobPost.toString());
-                    }
-                })
-                .toList();
+    private void rememberPage(String url, Validators storedValidators, Validators newValidators, boolean complete) {
+        if (complete && !newValidators.isEmpty()) {
+            Database.saveValidators(url, newValidators);
+        } else if (Objects.nonNull(storedValidators)) {
+            Database.deleteValidators(url);
+        }
+    }
+
+    /**
+     * A job post element waiting to be checked against the urls already scraped.
+     *
+     * @param jobPostUrl    the url of the job post
+     * @param element       the job post element
+     */
+    private record PendingJobPost(String jobPostUrl, Element element) {}
+
+    /**
+     * Builds the job posts of one list page.
+     * The urls of the job post elements are checked against the database in bulk, and each unseen job post
+     * is handed to its own virtual thread, with at most {@link Argument#MAX_CONCURRENT_FETCHES} detail pages
+     * being fetched at the same time. Job posts are collected in the order of the job post elements.
+     * If revisits are enabled, job posts seen before that are due for a revisit are built too,
+     * and only collected as updates if their digest changed.
+     */
+    private final class JobPostCollector implements AutoCloseable {
+
+        private final String url;
+        private final ExecutorService executorService;
+        private final List<Future<JobPost>> futures;
+        private final List<PendingJobPost> pending;
+        private final AtomicInteger failedJobPosts;
+        // The stored digests of the job posts being revisited, by job key
+        private final Map<String, Long> previousDigests;
+        private final int seenCheckBatchSize;
+        private int jobPostElements;
+        private int attemptIndex;
+
+        JobPostCollector(String url) {
+            this.url = url;
+            this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+            this.futures = new ArrayList<>();
+            this.pending = new ArrayList<>();
+            this.failedJobPosts = new AtomicInteger();
+            this.previousDigests = new HashMap<>();
+            // A parsed page is checked in one query, a streamed page in batches so detail pages are fetched while it downloads
+            this.seenCheckBatchSize = Objects.nonNull(streamingCardParser) ? STREAMED_SEEN_CHECK_BATCH_SIZE : Integer.MAX_VALUE;
+        }
+
+        /**
+         * Starts a new attempt at reading the list page.
+         * Elements already handed over by an earlier attempt are skipped, so a retried page builds each job post once.
+         */
+        void startAttempt() {
+            attemptIndex = 0;
+        }
+
+        void add(Element jobPostElement) {
+            attemptIndex += 1;
+            if (attemptIndex <= jobPostElements) {
+                return;
+            }
+            jobPostElements += 1;
+
+            String jobPostUrl = extractJobPostUrl(jobPostElement);
+            if (Objects.isNull(jobPostUrl)) {
+                failedJobPosts.incrementAndGet();
+                return;
+            }
+
+            pending.add(new PendingJobPost(jobPostUrl, jobPostElement));
+            if (pending.size() >= seenCheckBatchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Checks the pending job posts against the database in one query, and starts building the ones not seen before
+         * or due for a revisit. A job post appearing twice in the same check, also under different urls, is only built once.
+         */
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<String> pendingUrls = pending.stream()
+                    .map(PendingJobPost::jobPostUrl)
+                    .filter(pendingUrl -> !postingJobKeys.contains(JobSource.keyOf(pendingUrl)))
+                    .toList();
+            List<String> unseenUrls = Database.filterUnseen(pendingUrls, fullIp);
+            Set<String> jobKeysToBuild = unseenUrls.stream()
+                    .map(JobSource::keyOf)
+                    .collect(Collectors.toCollection(HashSet::new));
+
+            if (revisitsEnabled && unseenUrls.size() < pendingUrls.size()) {
+                List<String> seenUrls = pendingUrls.stream()
+                        .filter(pendingUrl -> !jobKeysToBuild.contains(JobSource.keyOf(pendingUrl)))
+                        .toList();
+                Database.findDueForRevisit(seenUrls, fullIp).forEach((dueUrl, digest) -> {
+                    String jobKey = JobSource.keyOf(dueUrl);
+                    previousDigests.put(jobKey, digest);
+                    jobKeysToBuild.add(jobKey);
+                });
+            }
+
+            for (PendingJobPost pendingJobPost : pending) {
+                if (jobKeysToBuild.remove(JobSource.keyOf(pendingJobPost.jobPostUrl()))) {
+                    futures.add(executorService.submit(() -> buildJobPostWithPermit(
+                            url, pendingJobPost.jobPostUrl(), pendingJobPost.element(), failedJobPosts)));
+                }
+            }
+            pending.clear();
+        }
+
+        private String extractJobPostUrl(Element jobPostElement) {
+            try {
+                String jobPostUrl = extractUrlForJobPostFromElement(url, jobPostElement);
+                if (Objects.isNull(jobPostUrl)) {
+                    logger.severe("Job post url returned null from " + url);
+                }
+                return jobPostUrl;
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not extract job post url from " + url, e);
+                return null;
+            }
+        }
+
+        /**
+         * Returns the number of job post elements handed over, including ones seen before.
+         *
+         * @return the number of job post elements on the page
+         */
+        int size() {
+            return jobPostElements;
+        }
+
+        /**
+         * Checks if every job post element on the page was scraped before, so there is nothing to build.
+         * Only meaningful once the page has been read and {@link #flush()} has run.
+         *
+         * @return true if every url on the page was seen before
+         */
+        boolean isFullySeen() {
+            return futures.isEmpty() && pending.isEmpty() && failedJobPosts.get() == 0;
+        }
+
+        /**
+         * Waits for all job posts and returns the ones that were built.
+         * Revisited job posts are returned as updates if they changed, and left out if not,
+         * in which case only their next revisit is scheduled.
+         *
+         * @return A list of valid job posts, in the order of the job post elements.
+         */
+        List<JobPost> collect() {
+            List<SeenUrl> unchanged = new ArrayList<>();
+            List<JobPost> jobPosts = futures.stream()
+                    .map(this::awaitJobPost)
+                    .filter(Objects::nonNull)
+                    .map(jobPost -> {
+                        Long previousDigest = previousDigests.get(JobSource.keyOf(jobPost.url()));
+                        if (Objects.isNull(previousDigest)) {
+                            return jobPost;
+                        }
+                        if (previousDigest == jobPost.digest()) {
+                            unchanged.add(new SeenUrl(jobPost.url(), jobPost.deadline(), previousDigest));
+                            return null;
+                        }
+                        return jobPost.asUpdate();
+                    })
+                    .filter(Objects::nonNull)
+                    .peek(jobPost -> {
+                        String debugArgument = Argument.getValue(Argument.DEBUG);
+                        if (debugArgument != null && debugArgument.equalsIgnoreCase("yes")){
+                           logger.info(jobPost.toString());
+                        }
+                    })
+                    .toList();
+
+            if (!unchanged.isEmpty()) {
+                logger.info("[" + name + "] " + unchanged.size() + " revisited job posts on " + url + " have not changed");
+                Database.updateUrlsLater(unchanged, fullIp);
+            }
+            return jobPosts;
+        }
+
+        /**
+         * Checks if every job post handed over was either built or seen before.
+         * Only meaningful once {@link #collect()} has returned.
+         *
+         * @return true if no job post failed to build
+         */
+        boolean allJobPostsBuilt() {
+            return failedJobPosts.get() == 0;
+        }
+
+        /**
+         * Waits for a job post being built on another thread.
+         * Runtime exceptions thrown while building are rethrown as is.
+         *
+         * @param future    The future of the job post being built.
+         * @return          The job post, or null if it could not be built.
+         */
+        private JobPost awaitJobPost(Future<JobPost> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warning("Interrupted while waiting for job post for " + name);
+                failedJobPosts.incrementAndGet();
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Stops building job posts, for when the list page could not be read.
+         */
+        void cancel() {
+            executorService.shutdownNow();
+        }
+
+        @Override
+        public void close() {
+            executorService.close();
+        }
+    }
+
+    /**
+     * Builds a {@link JobPost} once a fetch permit is available,
+     * limiting the number of detail pages fetched at the same time.
+     *
+     * @param url               The URL of the web page where the job post is located.
+     * @param jobPostUrl        The URL of the job post.
+     * @param element           The HTML element containing the job post information.
+     * @param failedJobPosts    The number of job posts on the page that could not be built.
+     * @return                  A JobPost object representing the job post, or null if extraction fails.
+     * @throws InterruptedException if interrupted while waiting for a permit
+     */
+    private JobPost buildJobPostWithPermit(String url, String jobPostUrl, Element element, AtomicInteger failedJobPosts)
+            throws InterruptedException {
+        fetchPermits.acquire();
+        try {
+            return buildJobPost(url, jobPostUrl, element, failedJobPosts);
+        } finally {
+            fetchPermits.release();
+        }
     }
 
     /**
@@ -322,69 +1038,162 @@ public sealed abstract class BaseWebScraper
     }
 
     /**
-     * Tries to send the given list of job posts to the REST API client.
-     * If successful, marks the URLs of the job posts as scraped.
+     * Finds the job posts that look like job posts sent before from another site, and tags them with the
+     * job post sent before, or leaves them out and marks them as scraped, depending on the duplicates argument.
+     * Updates of job posts sent before are never duplicates.
      *
-     * @param jobPosts The list of job posts to be sent.
+     * @param jobPosts  The job posts about to be sent.
+     * @return          The job posts to send.
      */
-    private void tryToSendJobPosts(List<JobPost> jobPosts) {
-        try {
-            if (apiClient.tryToPostJobs(jobPosts)) {
-                markUrlsAsScraped(jobPosts);
+    private List<JobPost> handleDuplicates(List<JobPost> jobPosts) {
+        if (Objects.equals(duplicates, "off")) {
+            return jobPosts;
+        }
+
+        List<JobPost> newJobPosts = jobPosts.stream()
+                .filter(jobPost -> !jobPost.update())
+                .toList();
+        Map<String, String> originals = Database.findOriginals(newJobPosts, fullIp);
+        if (originals.isEmpty()) {
+            return jobPosts;
+        }
+
+        if (Objects.equals(duplicates, "suppress")) {
+            logger.info("[" + this.name + "] Not sending " + originals.size() + " job posts sent before from another site");
+            Database.insertUrlsLater(jobPosts.stream()
+                    .filter(jobPost -> originals.containsKey(jobPost.url()))
+                    .map(jobPost -> new SeenUrl(jobPost.url(), jobPost.deadline(), jobPost.digest()))
+                    .toList(), fullIp);
+            return jobPosts.stream()
+                    .filter(jobPost -> !originals.containsKey(jobPost.url()))
+                    .toList();
+        }
+
+        logger.info("[" + this.name + "] Tagging " + originals.size() + " job posts sent before from another site");
+        return jobPosts.stream()
+                .map(jobPost -> originals.containsKey(jobPost.url())
+                        ? jobPost.asDuplicateOf(originals.get(jobPost.url()))
+                        : jobPost)
+                .toList();
+    }
+
+    /**
+     * Queues the given list of job posts to be posted by the REST API client, waiting only if the queue is full.
+     * Once the REST API has answered, marks the URLs of the job posts as scraped if they were sent,
+     * and then hands over whether they were sent. If the REST API could not be reached, the scan is stopped.
+     * Both run on their own virtual thread, not on the threads of the REST client.
+     *
+     * @param jobPosts  The list of job posts to be sent.
+     * @param onSent    Called with true if the job posts were sent, false otherwise.
+     */
+    void sendJobPostsLater(List<JobPost> jobPosts, Consumer<Boolean> onSent) {
+        Set<String> jobKeys = jobPosts.stream()
+                .map(jobPost -> JobSource.keyOf(jobPost.url()))
+                .collect(Collectors.toSet());
+        postingJobKeys.addAll(jobKeys);
+
+        pendingPosts.add(apiClient.postJobsAsync(jobPosts).handleAsync((posted, error) -> {
+            boolean sent = Objects.isNull(error) && posted;
+            if (Objects.nonNull(error)) {
+                continueScan = false;
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                logger.log(Level.SEVERE, "Connecting to rest api client failed. Url: " + apiClient.getPostUrl(),
+                        cause.getMessage());
+            }
+            try {
+                if (sent) {
+                    markUrlsAsScraped(jobPosts);
+                }
+                onSent.accept(sent);
+            } finally {
+                // Marked urls count as scraped from here on, and urls not sent may be built again
+                postingJobKeys.removeAll(jobKeys);
+            }
+            return null;
+        }, postCompletionExecutor));
+    }
+
+    /**
+     * Waits for the REST API to answer every post queued by this scraper.
+     */
+    void awaitPendingPosts() {
+        CompletableFuture<Void> pendingPost;
+        while (Objects.nonNull(pendingPost = pendingPosts.poll())) {
+            try {
+                pendingPost.join();
+            } catch (CompletionException | CancellationException e) {
+                logger.log(Level.SEVERE, "[" + this.name + "] Error occurred when marking posted urls as scraped",
+                        e.getMessage());
             }
-        } catch (RuntimeException e) {
-            continueScan = false;
-            logger.log(Level.SEVERE, "Connecting to rest api client failed. Url: " + apiClient.getPostUrl(), e.getMessage());
         }
     }
 
     /**
-     * Marks the URLs of the given job posts as scraped in the database.
+     * Queues the URLs of the given job posts to be marked as scraped in the database, so the scraper can move on
+     * to the next page. Until they are written, the URLs already count as scraped.
+     * The deadlines and digests are stored too, so the URLs can be removed once the job posts are gone,
+     * and the job posts sent again if they change. Updated job posts replace the digests stored before.
+     * The fingerprints of new job posts are stored, so copies of them on other sites are found.
      *
      * @param jobPosts The list of job posts whose URLs are to be marked as scraped.
      */
     private void markUrlsAsScraped(List<JobPost> jobPosts) {
-        jobPosts.forEach(jobPost -> Database.insertUrl(jobPost.url(), fullIp));
+        Map<Boolean, List<SeenUrl>> seenUrlsByUpdate = jobPosts.stream()
+                .collect(Collectors.partitioningBy(JobPost::update, Collectors.mapping(
+                        jobPost -> new SeenUrl(jobPost.url(), jobPost.deadline(), jobPost.digest()),
+                        Collectors.toList())));
+
+        List<SeenUrl> updatedUrls = seenUrlsByUpdate.get(true);
+        if (!updatedUrls.isEmpty()) {
+            logger.info("[" + this.name + "] " + updatedUrls.size() + " job posts were sent as updates");
+            Database.updateUrlsLater(updatedUrls, fullIp);
+        }
+        Database.insertUrlsLater(seenUrlsByUpdate.get(false), fullIp);
+
+        if (!Objects.equals(duplicates, "off")) {
+            Database.addFingerprints(jobPosts.stream()
+                    .filter(jobPost -> !jobPost.update() && Objects.isNull(jobPost.duplicateOf()))
+                    .toList(), fullIp);
+        }
     }
 
     /**
      * Builds a {@link JobPost} object from the provided URL and HTML element.
      * Extracts various attributes of the job post from the HTML element and associated document.
      *
-     * @param url       The URL of the web page where the job post is located.
-     * @param element   The HTML element containing the job post information.
-     * @return          A JobPost object representing the job post, or null if extraction fails.
-     * @see             JobPost
+     * @param url               The URL of the web page where the job post is located.
+     * @param jobPostUrl        The URL of the job post, already checked to not have been scraped before.
+     * @param element           The HTML element containing the job post information.
+     * @param failedJobPosts    The number of job posts on the page that could not be built.
+     * @return                  A JobPost object representing the job post, or null if extraction fails.
+     * @see                     JobPost
      */
-    private JobPost buildJobPost(String url, Element element) {
-        String jobPostUrl = extractUrlForJobPostFromElement(url, element);
-
-        if (Objects.isNull(jobPostUrl)) {
-            logger.severe("Job post url returned null from " + url);
-            return null;
-        }
-
-        if (Database.exists(jobPostUrl, fullIp)) {
-            return null;
-        }
-
+    private JobPost buildJobPost(String url, String jobPostUrl, Element element, AtomicInteger failedJobPosts) {
         String imageUrl = extractImageUrlForJobPostFromElement(url, element);
         String title = extractTitleForJobPostFromElement(url, element);
 
-        Document jobPostDoc = this.getDocument(jobPostUrl);
+        Document jobPostDoc = this.getDetailDocument(jobPostUrl);
 
         if (Objects.isNull(jobPostDoc)) {
             logger.severe("Returning null because doc returned thus resulting in jobpost being null");
+            failedJobPosts.incrementAndGet();
             return null;
         }
 
-        String companyName = extractCompanyNameForJobPostFromDoc(jobPostDoc);
-        String companyImageUrl = extractCompanyImageUrlForJobPostFromDoc(jobPostDoc);
-        LocalDate deadline = extractDeadlineForJobPostFromDoc(jobPostDoc);
-        String description = extractDescriptionForJobPostFromDoc(jobPostDoc);
+        // Fields embedded as a JSON-LD JobPosting are read from there, the rest from the document
+        JobPostingJsonLd jsonLd = JobPostingJsonLd.extract(jobPostDoc).orElse(JobPostingJsonLd.EMPTY);
+
+        String companyName = orElseExtract(jsonLd.companyName(), () -> extractCompanyNameForJobPostFromDoc(jobPostDoc));
+        String companyImageUrl = orElseExtract(jsonLd.companyImageUrl(), () -> extractCompanyImageUrlForJobPostFromDoc(jobPostDoc));
+        LocalDate deadline = orElseExtract(jsonLd.deadline(), () -> extractDeadlineForJobPostFromDoc(jobPostDoc));
+        String description = orElseExtract(jsonLd.description(), () -> extractDescriptionForJobPostFromDoc(jobPostDoc));
         Set<String> tags = extractTagsForJobPostFromDoc(jobPostDoc);
         Map<String, Set<String>> definitionMap = extractDefinitionsMapForJobPostFromDoc(jobPostDoc);
 
+        if (!definitionMap.containsKey("Sted") && !jsonLd.locations().isEmpty()) {
+            definitionMap.put("Sted", jsonLd.locations());
+        }
+
         // TODO IMPROVE
         if (!definitionMap.containsKey("Sektor")) {
             definitionMap.put("Sektor", Set.of("Ikke oppgitt"));
@@ -402,6 +1211,101 @@ public sealed abstract class BaseWebScraper
                 .build();
     }
 
+    /**
+     * Returns the given value, or extracts it from the document if it is null.
+     *
+     * @param value     The value read from the JSON-LD of the job post, or null if not given.
+     * @param extractor Extracts the value from the document.
+     * @param <T>       The type of the value.
+     * @return          The value, or the extracted value if it was null.
+     */
+    private static <T> T orElseExtract(T value, Supplier<T> extractor) {
+        return Objects.nonNull(value) ? value : extractor.get();
+    }
+
+    /**
+     * Creates the parser streaming job post elements out of list pages, if streaming was enabled.
+     * Falls back to parsing the full document if the XPath to the job post elements is too complex to stream.
+     *
+     * @return the streaming parser, or null if list pages are parsed in full
+     */
+    private StreamingCardParser createStreamingCardParser() {
+        if (!Objects.equals(Argument.getValue(Argument.STREAM_PAGES), "yes")) {
+            return null;
+        }
+
+        Optional<StreamingCardParser> parser = StreamingCardParser.fromXPath(XPath);
+        if (parser.isEmpty()) {
+            logger.warning("Cannot stream list pages for " + this.name + " with XPath " + XPath + ", parsing them in full");
+        }
+        return parser.orElse(null);
+    }
+
+    /**
+     * Creates the parser that stops reading detail pages once the job post has been read, if streaming was enabled.
+     * Detail pages are read in full while the page cache is enabled, since only complete pages are cached.
+     *
+     * @return the early exit parser, or null if detail pages are read in full
+     */
+    private EarlyExitDocumentParser createDetailPageParser() {
+        String endMarker = getDetailPageEndMarker();
+        if (!Objects.equals(Argument.getValue(Argument.STREAM_PAGES), "yes")
+                || Objects.equals(Argument.getValue(Argument.CACHE), "yes")
+                || Objects.isNull(endMarker)) {
+            return null;
+        }
+        return new EarlyExitDocumentParser(endMarker, this::hasRequiredDetailFields);
+    }
+
+    /**
+     * Returns the text that follows every field of the job post on a detail page,
+     * or null if detail pages should always be read in full.
+     *
+     * @return the end marker of the job post on detail pages
+     */
+    protected String getDetailPageEndMarker() {
+        return null;
+    }
+
+    /**
+     * Checks that a possibly partial detail page has the fields a job post cannot do without.
+     *
+     * @param doc   The HTML document of the detail page.
+     * @return      true if the company name and description can be extracted
+     */
+    boolean hasRequiredDetailFields(Document doc) {
+        try {
+            return StringUtils.isNotEmpty(extractCompanyNameForJobPostFromDoc(doc))
+                    && StringUtils.isNotEmpty(extractDescriptionForJobPostFromDoc(doc));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the argument holding the rate limit for the website, or null if the website is not rate limited.
+     *
+     * @return the rate limit argument for the website
+     */
+    protected Argument getRateLimitArgument() {
+        return null;
+    }
+
+    /**
+     * Sets up the rate limiter shared by all fetches against the host of the website.
+     */
+    private void setUpRateLimiter() {
+        Argument rateLimitArgument = getRateLimitArgument();
+        if (rateLimitArgument == null) {
+            return;
+        }
+
+        String rateLimit = Objects.requireNonNullElse(Argument.getValue(rateLimitArgument), DEFAULT_RATE_LIMIT);
+        RateLimiter rateLimiter = RateLimiter.parse(rateLimit);
+        HttpTransport.forUrl(this.url).setRateLimiter(rateLimiter);
+        logger.info("Rate limiting " + this.name + " to " + rateLimiter);
+    }
+
     private void setStartPageFromArgument() {
         String pageToStartAt = Argument.getValue(Argument.START_PAGE);
         if (StringUtils.isNotEmpty(pageToStartAt)) {
@@ -431,13 +1335,36 @@ public sealed abstract class BaseWebScraper
     }
 
     /**
-     * Ensure the scraper stops after ALLOWED_FAILED_ATTEMPTS attempts
+     * Sleeps until the given circuit breaker lets requests through again,
+     * unless the scan has been stopped.
+     *
+     * @param circuitBreaker  the open circuit breaker to wait for
+     * @param url             the url to scrape again once the host is back
+     */
+    private void waitForCircuitBreaker(CircuitBreaker circuitBreaker, String url) {
+        if (!continueScan()) {
+            return;
+        }
+
+        Duration coolDown = circuitBreaker.getRemainingCoolDown();
+        logger.warning(String.format("[%s] Waiting %s seconds before scraping %s again, %s",
+                this.name, coolDown.toSeconds(), url, circuitBreaker.getStatistics()));
+        try {
+            Thread.sleep(coolDown);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setContinueScan(false);
+        }
+    }
+
+    /**
+     * Ensure the scraper stops after ALLOWED_FAILED_ATTEMPTS attempts, counted across all crawl workers
      */
     private void handleFailedAttempt() {
-        this.failedAttempts += 1;
-        if (this.failedAttempts >= ALLOWED_FAILED_ATTEMPTS) {
+        int attempts = this.failedAttempts.incrementAndGet();
+        if (attempts >= ALLOWED_FAILED_ATTEMPTS) {
             setContinueScan(false);
-            logger.severe(String.format("[%s] Stopped scanning due to %s/%s", this.name, failedAttempts, ALLOWED_FAILED_ATTEMPTS));
+            logger.severe(String.format("[%s] Stopped scanning due to %s/%s", this.name, attempts, ALLOWED_FAILED_ATTEMPTS));
         }
     }
 
@@ -0,0 +1,85 @@
+package no.jobbscraper.webscraper;
+
+import no.jobbscraper.http.IBodyParser;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * Parses a detail page, but stops reading it once the part holding the job post has arrived.
+ * The body is read until the end marker shows up, and everything before the marker is parsed.
+ * If the partial document has every required field, the rest of the page is never read,
+ * which lets the caller drop the download. Otherwise the rest is read and the full page is parsed.
+ */
+final class EarlyExitDocumentParser implements IBodyParser<Document> {
+
+    private static final int CHUNK_SIZE = 8192;
+    private final byte[] endMarker;
+    private final Predicate<Document> isComplete;
+
+    /**
+     * Constructs an EarlyExitDocumentParser.
+     *
+     * @param endMarker     the text that comes after every field of the job post in the raw page
+     * @param isComplete    checks that a partial document has every required field
+     */
+    EarlyExitDocumentParser(String endMarker, Predicate<Document> isComplete) {
+        this.endMarker = endMarker.getBytes(StandardCharsets.UTF_8);
+        this.isComplete = isComplete;
+    }
+
+    @Override
+    public Document parse(InputStream body, String charset, String location) throws IOException {
+        ReadBuffer read = new ReadBuffer();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int searchFrom = 0;
+
+        int bytesRead;
+        while ((bytesRead = body.read(chunk)) != -1) {
+            read.write(chunk, 0, bytesRead);
+
+            int markerIndex = read.indexOf(endMarker, searchFrom);
+            if (markerIndex >= 0) {
+                Document partial = Jsoup.parse(read.asInputStream(markerIndex), charset, location);
+                if (isComplete.test(partial)) {
+                    return partial;
+                }
+                break;
+            }
+            searchFrom = Math.max(0, read.size() - endMarker.length + 1);
+        }
+
+        // The marker never showed up, or the fields were not all before it
+        body.transferTo(read);
+        return Jsoup.parse(read.asInputStream(read.size()), charset, location);
+    }
+
+    /**
+     * A byte buffer that can be searched and read without copying.
+     */
+    private static final class ReadBuffer extends ByteArrayOutputStream {
+
+        int indexOf(byte[] target, int from) {
+            outer:
+            for (int i = from; i <= count - target.length; i++) {
+                for (int j = 0; j < target.length; j++) {
+                    if (buf[i + j] != target[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        InputStream asInputStream(int length) {
+            return new ByteArrayInputStream(buf, 0, length);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package no.jobbscraper.webscraper;
 
+import no.jobbscraper.argument.Argument;
 import no.jobbscraper.url.WebsiteURL;
 import no.jobbscraper.utils.DateUtils;
 import no.jobbscraper.utils.ElementSearchQuery;
@@ -18,6 +19,17 @@ public final class FinnScraper extends BaseWebScraper {
         super("finn", WebsiteURL.FINN_NO, WebsiteURL.FINN_NO_WITH_PAGE, "//article");
     }
 
+    @Override
+    protected Argument getRateLimitArgument() {
+        return Argument.FINN_RATE_LIMIT;
+    }
+
+    @Override
+    protected String getDetailPageEndMarker() {
+        // The recommended ads follow the ad and its JSON-LD
+        return "<job-recommendation-podlet-isolated>";
+    }
+
     @Override
     String extractUrlForJobPostFromElement(String url, Element element) {
         ElementSearchQuery searchQuery = new ElementSearchQuery.Builder(url, element)
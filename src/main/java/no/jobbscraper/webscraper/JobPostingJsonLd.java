@@ -0,0 +1,152 @@
+package no.jobbscraper.webscraper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.jobbscraper.utils.StringUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The fields of a schema.org JobPosting embedded in a detail page as a
+ * {@code <script type="application/ld+json">} block.
+ * Reading these is far cheaper than running the XPath and CSS queries of the scraper,
+ * and does not break when the class names of the website change.
+ * Fields missing from the block are null, and are extracted from the document instead.
+ *
+ * @param companyName       the name of the hiring organization
+ * @param companyImageUrl   the logo of the hiring organization
+ * @param description       the description of the job post, as HTML
+ * @param deadline          the date the job post is valid through
+ * @param locations         the localities of the job locations, or an empty set if not given
+ */
+record JobPostingJsonLd(
+        String companyName,
+        String companyImageUrl,
+        String description,
+        LocalDate deadline,
+        Set<String> locations) {
+
+    static final JobPostingJsonLd EMPTY = new JobPostingJsonLd(null, null, null, null, Set.of());
+    private static final Logger logger = Logger.getLogger(JobPostingJsonLd.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String JOB_POSTING_TYPE = "JobPosting";
+
+    /**
+     * Extracts the first JobPosting found in the JSON-LD blocks of the document.
+     * The JobPosting may be the block itself, be inside an array or a {@code @graph}, or be wrapped in another object.
+     *
+     * @param doc   The HTML document of the detail page.
+     * @return      The JobPosting, or empty if the document has none.
+     */
+    static Optional<JobPostingJsonLd> extract(Document doc) {
+        for (Element script : doc.select("script[type=application/ld+json]")) {
+            try {
+                JsonNode jobPosting = findJobPosting(objectMapper.readTree(script.data()));
+                if (Objects.nonNull(jobPosting)) {
+                    return Optional.of(fromJobPosting(jobPosting));
+                }
+            } catch (JsonProcessingException e) {
+                logger.fine("Could not read JSON-LD block from " + doc.location() + ": " + e.getOriginalMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static JsonNode findJobPosting(JsonNode node) {
+        if (isJobPosting(node)) {
+            return node;
+        }
+        if (!node.isContainerNode()) {
+            return null;
+        }
+        for (JsonNode child : node) {
+            JsonNode jobPosting = findJobPosting(child);
+            if (Objects.nonNull(jobPosting)) {
+                return jobPosting;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJobPosting(JsonNode node) {
+        JsonNode type = node.path("@type");
+        if (type.isArray()) {
+            for (JsonNode typeValue : type) {
+                if (JOB_POSTING_TYPE.equals(typeValue.asText())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return JOB_POSTING_TYPE.equals(type.asText());
+    }
+
+    private static JobPostingJsonLd fromJobPosting(JsonNode jobPosting) {
+        JsonNode hiringOrganization = jobPosting.path("hiringOrganization");
+        String companyName = hiringOrganization.isTextual()
+                ? textOrNull(hiringOrganization)
+                : textOrNull(hiringOrganization.path("name"));
+
+        // The logo is either a url or an ImageObject
+        JsonNode logo = hiringOrganization.path("logo");
+        String companyImageUrl = logo.isObject() ? textOrNull(logo.path("url")) : textOrNull(logo);
+
+        return new JobPostingJsonLd(companyName,
+                companyImageUrl,
+                textOrNull(jobPosting.path("description")),
+                parseDate(textOrNull(jobPosting.path("validThrough"))),
+                extractLocations(jobPosting.path("jobLocation")));
+    }
+
+    private static Set<String> extractLocations(JsonNode jobLocation) {
+        Set<String> locations = new LinkedHashSet<>();
+        if (jobLocation.isArray()) {
+            jobLocation.forEach(place -> addLocation(place, locations));
+        } else {
+            addLocation(jobLocation, locations);
+        }
+        return Collections.unmodifiableSet(locations);
+    }
+
+    private static void addLocation(JsonNode place, Set<String> locations) {
+        String locality = textOrNull(place.path("address").path("addressLocality"));
+        if (Objects.nonNull(locality)) {
+            locations.add(locality);
+        }
+    }
+
+    /**
+     * Parses the date part of an ISO-8601 date or date-time.
+     *
+     * @param value The date or date-time, for example 2024-10-20 or 2024-10-20T23:59:00+02:00.
+     * @return      The date, or null if it could not be parsed.
+     */
+    private static LocalDate parseDate(String value) {
+        if (Objects.isNull(value) || value.length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.substring(0, 10));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String textOrNull(JsonNode node) {
+        if (!node.isValueNode()) {
+            return null;
+        }
+        String text = node.asText().strip();
+        return StringUtils.isEmpty(text) ? null : text;
+    }
+}
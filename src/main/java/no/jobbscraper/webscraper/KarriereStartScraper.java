@@ -1,5 +1,6 @@
 package no.jobbscraper.webscraper;
 
+import no.jobbscraper.argument.Argument;
 import no.jobbscraper.url.WebsiteURL;
 import no.jobbscraper.utils.DateUtils;
 import no.jobbscraper.utils.ElementSearchQuery;
@@ -29,6 +30,17 @@ public final class KarriereStartScraper extends BaseWebScraper {
         return super.continueScan() && getPage() <= getMaxPage();
     }
 
+    @Override
+    protected Argument getRateLimitArgument() {
+        return Argument.KARRIERESTART_RATE_LIMIT;
+    }
+
+    @Override
+    protected String getDetailPageEndMarker() {
+        // The recruitment calendar and footer follow the job post
+        return "<!-- Recruitment Calendar -->";
+    }
+
     @Override
     String extractUrlForJobPostFromElement(String url, Element element) {
         ElementSearchQuery searchQuery = new ElementSearchQuery.Builder(url, element)
@@ -200,7 +212,7 @@ public final class KarriereStartScraper extends BaseWebScraper {
 
     @Override
     protected void setMaxPage(){
-        Document doc = this.getDocument(getCurrentUrl());
+        Document doc = this.getListDocument(getCurrentUrl());
 
         Elements liElements = this.getElementsFromXPath(doc, "//ul[@class='paginate paginate-mobile']/li");
         Element lastPageElement = liElements.last().select("a[href]").first();
@@ -0,0 +1,76 @@
+package no.jobbscraper.webscraper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The position of one crawl worker within its range of list pages.
+ * Each worker owns its cursor, so workers can move through their ranges without sharing the page of the scraper.
+ */
+final class PageCursor {
+
+    private int page;
+    private final int lastPage;
+
+    /**
+     * Constructs a PageCursor starting at the first page of the range.
+     *
+     * @param firstPage the first page of the range
+     * @param lastPage  the last page of the range
+     */
+    PageCursor(int firstPage, int lastPage) {
+        this.page = firstPage;
+        this.lastPage = lastPage;
+    }
+
+    /**
+     * Splits the pages from the first page to the last page into contiguous ranges of about the same size.
+     * Fewer ranges than workers are returned if there are fewer pages than workers.
+     *
+     * @param firstPage the first page to crawl
+     * @param lastPage  the last page to crawl
+     * @param workers   the number of workers to split the pages between
+     * @return          a cursor for each range, in page order
+     */
+    static List<PageCursor> split(int firstPage, int lastPage, int workers) {
+        List<PageCursor> cursors = new ArrayList<>();
+        int pages = lastPage - firstPage + 1;
+        if (pages <= 0) {
+            return cursors;
+        }
+
+        int ranges = Math.min(workers, pages);
+        int rangeStart = firstPage;
+        for (int range = 0; range < ranges; range++) {
+            // Spread the remainder over the first ranges
+            int rangeSize = pages / ranges + (range < pages % ranges ? 1 : 0);
+            cursors.add(new PageCursor(rangeStart, rangeStart + rangeSize - 1));
+            rangeStart += rangeSize;
+        }
+        return cursors;
+    }
+
+    int getPage() {
+        return page;
+    }
+
+    int getLastPage() {
+        return lastPage;
+    }
+
+    /**
+     * Checks if the cursor is still within its range.
+     *
+     * @return true if there are pages left to scrape
+     */
+    boolean hasPage() {
+        return page <= lastPage;
+    }
+
+    /**
+     * Moves the cursor to the next page.
+     */
+    void advance() {
+        page += 1;
+    }
+}
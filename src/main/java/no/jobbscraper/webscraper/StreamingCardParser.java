@@ -0,0 +1,275 @@
+package no.jobbscraper.webscraper;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls the job posting "cards" out of a list page while it is being downloaded,
+ * without building a DOM for the rest of the page.
+ * The page is scanned tag by tag, and each card is parsed on its own and handed over
+ * as soon as its closing tag is read, so work on the first cards can start before the page has arrived.
+ * <p>
+ * Only simple card XPaths on the form {@code //tag} or {@code //tag[@class='value']} are supported.
+ */
+final class StreamingCardParser {
+
+    private static final Pattern SIMPLE_XPATH = Pattern.compile("//([a-zA-Z][a-zA-Z0-9]*)(?:\\[@class='([^']*)'])?");
+    private static final Pattern CLASS_ATTRIBUTE = Pattern.compile(
+            "(?:^|\\s)class\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))", Pattern.CASE_INSENSITIVE);
+    // The content of these tags is text, so tags inside them must not be counted
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "textarea", "title");
+    private static final int CHUNK_SIZE = 8192;
+    private final String tagName;
+    private final String className;
+
+    private StreamingCardParser(String tagName, String className) {
+        this.tagName = tagName;
+        this.className = className;
+    }
+
+    /**
+     * Creates a parser for the cards selected by the given XPath.
+     *
+     * @param XPath the XPath to the "job posting cards"
+     * @return      a parser for the cards, or empty if the XPath is too complex to stream
+     */
+    static Optional<StreamingCardParser> fromXPath(String XPath) {
+        Matcher matcher = SIMPLE_XPATH.matcher(XPath);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(new StreamingCardParser(matcher.group(1).toLowerCase(Locale.ROOT), matcher.group(2)));
+    }
+
+    /**
+     * Reads the page and hands each card to the consumer as soon as it has been read.
+     *
+     * @param body      the body of the list page
+     * @param charset   the charset of the body, or null for UTF-8
+     * @param location  the url of the page, used to resolve relative links in the cards
+     * @param consumer  the consumer of the cards, called in the order they appear on the page
+     * @throws IOException if the body could not be read
+     */
+    void parse(InputStream body, String charset, String location, Consumer<Element> consumer) throws IOException {
+        Charset bodyCharset = Objects.isNull(charset) ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        new Scanner(new InputStreamReader(body, bodyCharset), location, consumer).scan();
+    }
+
+    private final class Scanner {
+
+        private final Reader reader;
+        private final String location;
+        private final Consumer<Element> consumer;
+        private final StringBuilder buffer;
+        private final char[] chunk;
+
+        Scanner(Reader reader, String location, Consumer<Element> consumer) {
+            this.reader = reader;
+            this.location = location;
+            this.consumer = consumer;
+            this.buffer = new StringBuilder();
+            this.chunk = new char[CHUNK_SIZE];
+        }
+
+        void scan() throws IOException {
+            int position = 0;
+            int cardStart = -1;
+            int depth = 0;
+
+            while (true) {
+                int tagStart = find("<", position);
+                if (tagStart < 0) {
+                    return;
+                }
+
+                if (startsWith("<!--", tagStart)) {
+                    int commentEnd = find("-->", tagStart + 4);
+                    if (commentEnd < 0) {
+                        return;
+                    }
+                    position = commentEnd + 3;
+                    continue;
+                }
+
+                if (!startsTag(tagStart + 1)) {
+                    // A stray '<' in text
+                    position = tagStart + 1;
+                    continue;
+                }
+
+                int tagEnd = findTagEnd(tagStart + 1);
+                if (tagEnd < 0) {
+                    return;
+                }
+                String tag = buffer.substring(tagStart + 1, tagEnd);
+                position = tagEnd + 1;
+
+                boolean closing = tag.startsWith("/");
+                String name = readName(tag, closing ? 1 : 0);
+                if (name.isEmpty()) {
+                    // Doctype or processing instruction
+                    continue;
+                }
+
+                if (!closing) {
+                    boolean selfClosing = tag.endsWith("/");
+                    if (name.equals(tagName) && !selfClosing) {
+                        if (cardStart < 0 && hasClass(tag)) {
+                            cardStart = tagStart;
+                            depth = 1;
+                        } else if (cardStart >= 0) {
+                            depth += 1;
+                        }
+                    }
+
+                    if (RAW_TEXT_TAGS.contains(name) && !selfClosing) {
+                        int rawTextEnd = findIgnoreCase("</" + name, position);
+                        if (rawTextEnd < 0) {
+                            return;
+                        }
+                        position = rawTextEnd;
+                    }
+                } else if (cardStart >= 0 && name.equals(tagName)) {
+                    depth -= 1;
+                    if (depth == 0) {
+                        emit(buffer.substring(cardStart, position));
+                        cardStart = -1;
+                    }
+                }
+
+                // Drop what has been scanned, unless it is part of a card
+                if (cardStart < 0 && position >= CHUNK_SIZE) {
+                    buffer.delete(0, position);
+                    position = 0;
+                }
+            }
+        }
+
+        private void emit(String cardHtml) {
+            Element card = Jsoup.parseBodyFragment(cardHtml, location).body().firstElementChild();
+            if (Objects.nonNull(card)) {
+                consumer.accept(card);
+            }
+        }
+
+        private boolean hasClass(String tag) {
+            if (Objects.isNull(className)) {
+                return true;
+            }
+            Matcher matcher = CLASS_ATTRIBUTE.matcher(tag);
+            if (!matcher.find()) {
+                return false;
+            }
+            String value = matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2)
+                    : matcher.group(3);
+            return className.equals(value);
+        }
+
+        private String readName(String tag, int start) {
+            int end = start;
+            while (end < tag.length()) {
+                char c = tag.charAt(end);
+                if (!Character.isLetterOrDigit(c) && c != '-' && c != ':') {
+                    break;
+                }
+                end += 1;
+            }
+            if (end == start || !Character.isLetter(tag.charAt(start))) {
+                return "";
+            }
+            return tag.substring(start, end).toLowerCase(Locale.ROOT);
+        }
+
+        private boolean startsTag(int index) throws IOException {
+            if (index >= buffer.length() && !fill()) {
+                return false;
+            }
+            char c = buffer.charAt(index);
+            return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+        }
+
+        private boolean startsWith(String prefix, int from) throws IOException {
+            while (buffer.length() < from + prefix.length()) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return buffer.substring(from, from + prefix.length()).equals(prefix);
+        }
+
+        private int find(String target, int from) throws IOException {
+            while (true) {
+                int index = buffer.indexOf(target, from);
+                if (index >= 0) {
+                    return index;
+                }
+                from = Math.max(from, buffer.length() - target.length() + 1);
+                if (!fill()) {
+                    return -1;
+                }
+            }
+        }
+
+        private int findIgnoreCase(String target, int from) throws IOException {
+            while (true) {
+                for (int index = from; index + target.length() <= buffer.length(); index++) {
+                    if (buffer.charAt(index) == '<' && buffer.substring(index, index + target.length()).equalsIgnoreCase(target)) {
+                        return index;
+                    }
+                }
+                from = Math.max(from, buffer.length() - target.length() + 1);
+                if (!fill()) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Finds the '>' ending the tag starting before the given index, skipping any inside quoted attribute values.
+         */
+        private int findTagEnd(int from) throws IOException {
+            char quote = 0;
+            int index = from;
+            while (true) {
+                if (index >= buffer.length() && !fill()) {
+                    return -1;
+                }
+                char c = buffer.charAt(index);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return index;
+                }
+                index += 1;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int read = reader.read(chunk);
+            if (read < 0) {
+                return false;
+            }
+            buffer.append(chunk, 0, read);
+            return true;
+        }
+    }
+}
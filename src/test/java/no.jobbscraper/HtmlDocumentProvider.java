@@ -1,6 +1,9 @@
 package no.jobbscraper;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -9,6 +12,8 @@ import org.jsoup.nodes.Document;
 
 public abstract class HtmlDocumentProvider {
 
+    private String listViewContent;
+    private String detailViewContent;
     private Document listViewDocument;
     private Document detailViewDocument;
 
@@ -18,8 +23,8 @@ public abstract class HtmlDocumentProvider {
             String detailViewFileName) {
         Path workingDir = Path.of("", "src/test/resources/html");
         try {
-            String listViewContent = Files.readString(workingDir.resolve(listViewContentFileName));
-            String detailViewContent = Files.readString(workingDir.resolve(detailViewFileName));
+            this.listViewContent = Files.readString(workingDir.resolve(listViewContentFileName));
+            this.detailViewContent = Files.readString(workingDir.resolve(detailViewFileName));
 
             this.listViewDocument = Jsoup.parse(listViewContent, url);
             this.detailViewDocument = Jsoup.parse(detailViewContent, url);
@@ -35,4 +40,12 @@ public abstract class HtmlDocumentProvider {
     protected Document getDetailViewDocument(){
         return this.detailViewDocument;
     }
+
+    protected InputStream getListViewInputStream(){
+        return new ByteArrayInputStream(this.listViewContent.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected InputStream getDetailViewInputStream(){
+        return new ByteArrayInputStream(this.detailViewContent.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,72 @@
+package no.jobbscraper.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest {
+
+    private static final int EXPECTED_INSERTIONS = 100_000;
+    private static final int LOOKUPS = 500_000;
+
+    @Test
+    @DisplayName("Ensure every added job key is found")
+    void itShouldNeverGiveFalseNegatives() {
+        // Given
+        BloomFilter bloomFilter = new BloomFilter(EXPECTED_INSERTIONS, 0.01);
+
+        // When
+        for (int i = 0; i < EXPECTED_INSERTIONS * 2; i++) {
+            bloomFilter.add(jobKey(i));
+        }
+
+        // Then
+        for (int i = 0; i < EXPECTED_INSERTIONS * 2; i++) {
+            Assertions.assertTrue(bloomFilter.mightContain(jobKey(i)), jobUrl(i));
+        }
+        Assertions.assertTrue(bloomFilter.isOverCapacity());
+    }
+
+    @Test
+    @DisplayName("Ensure the false positive rate stays within the default seen filter rate")
+    void itShouldKeepDefaultFalsePositiveRate() {
+        assertFalsePositiveRateWithin(0.01);
+    }
+
+    @Test
+    @DisplayName("Ensure the false positive rate stays within a lower seen filter rate")
+    void itShouldKeepLowerFalsePositiveRate() {
+        assertFalsePositiveRateWithin(0.001);
+    }
+
+    private static void assertFalsePositiveRateWithin(double falsePositiveRate) {
+        // Given
+        BloomFilter bloomFilter = new BloomFilter(EXPECTED_INSERTIONS, falsePositiveRate);
+        for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+            bloomFilter.add(jobKey(i));
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = EXPECTED_INSERTIONS; i < EXPECTED_INSERTIONS + LOOKUPS; i++) {
+            if (bloomFilter.mightContain(jobKey(i))) {
+                falsePositives += 1;
+            }
+        }
+
+        // Then
+        double actualRate = (double) falsePositives / LOOKUPS;
+        Assertions.assertFalse(bloomFilter.isOverCapacity());
+        // A fifth on top of the rate asked for leaves room for the sampling noise of the lookups
+        Assertions.assertTrue(actualRate <= falsePositiveRate * 1.2,
+                "false positive rate " + actualRate + " above " + falsePositiveRate);
+    }
+
+    private static long jobKey(int id) {
+        return JobKeys.of(jobUrl(id));
+    }
+
+    private static String jobUrl(int id) {
+        return "https://karrierestart.no/ledig-stilling/" + id;
+    }
+}
@@ -0,0 +1,353 @@
+package no.jobbscraper.database;
+
+import no.jobbscraper.jobpost.JobPost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+public class DatabaseTest {
+
+    private static final String FULL_IP = "localhost:8080";
+
+    @TempDir
+    private Path folder;
+
+    @BeforeEach
+    public void setUp() {
+        Database.setFile(folder.resolve("test.db"));
+        Database.setUp();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Database.setFile(Path.of("test.db"));
+    }
+
+    @Test
+    @DisplayName("Ensure a database from before the schema was versioned is migrated without its duplicate urls")
+    public void itShouldMigrateUnversionedDatabaseWithDuplicateUrls() throws SQLException {
+        // Given
+        Path oldFile = folder.resolve("old.db");
+        String otherIp = "staging:8080";
+        try (Connection oldConnection = DriverManager.getConnection("jdbc:sqlite:" + oldFile);
+             Statement statement = oldConnection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE VISITED_URLS (URL CHAR(255) NOT NULL, IP CHAR(255) NOT NULL)");
+            statement.executeUpdate("CREATE TABLE HTTP_VALIDATORS (URL TEXT PRIMARY KEY, ETAG TEXT, LAST_MODIFIED TEXT)");
+            statement.executeUpdate("INSERT INTO VISITED_URLS (URL, IP) VALUES " +
+                    "('https://www.finn.no/job/fulltime/ad.html?finnkode=123', '" + FULL_IP + "'), " +
+                    "('https://www.finn.no/job/fulltime/ad.html?finnkode=123', '" + FULL_IP + "'), " +
+                    "('https://www.finn.no/job/fulltime/ad.html?finnkode=123', '" + FULL_IP + "'), " +
+                    "('https://karrierestart.no/ledig-stilling/5', '" + FULL_IP + "'), " +
+                    "('https://www.finn.no/job/fulltime/ad.html?finnkode=123', '" + otherIp + "')");
+        }
+
+        // When
+        Database.setFile(oldFile);
+        Database.setUp();
+
+        // Then
+        try (Statement statement = Database.getConnection().createStatement()) {
+            Assertions.assertEquals(8, queryLong(statement, "PRAGMA user_version"));
+            Assertions.assertEquals(0, queryLong(statement,
+                    "SELECT COUNT(*) FROM sqlite_master WHERE name = 'VISITED_URLS'"));
+            Assertions.assertEquals(3, queryLong(statement, "SELECT COUNT(*) FROM SEEN_JOBS"));
+            Assertions.assertEquals(1, queryLong(statement,
+                    "SELECT COUNT(*) FROM pragma_index_list('SEEN_JOBS') WHERE \"unique\" = 1 AND origin = 'pk'"));
+            Assertions.assertThrows(SQLException.class, () -> statement.executeUpdate(
+                    "INSERT INTO SEEN_JOBS (TARGET_ID, JOB_KEY, EXPIRES_AT) SELECT TARGET_ID, JOB_KEY, EXPIRES_AT FROM SEEN_JOBS"));
+        }
+        Assertions.assertEquals(List.of(), Database.filterUnseen(
+                List.of("https://www.finn.no/job/fulltime/ad.html?finnkode=123", "https://karrierestart.no/ledig-stilling/5"), FULL_IP));
+    }
+
+    @Test
+    @DisplayName("Ensure only a new database gets incremental vacuum at startup, and an existing one is switched later")
+    public void itShouldLeaveSwitchingExistingDatabaseToIncrementalVacuumUntilLater() throws SQLException {
+        // Given
+        Path oldFile = folder.resolve("old.db");
+        try (Connection oldConnection = DriverManager.getConnection("jdbc:sqlite:" + oldFile);
+             Statement statement = oldConnection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE VISITED_URLS (URL CHAR(255) NOT NULL, IP CHAR(255) NOT NULL)");
+        }
+        long newDatabaseAutoVacuum;
+        try (Statement statement = Database.getConnection().createStatement()) {
+            newDatabaseAutoVacuum = queryLong(statement, "PRAGMA auto_vacuum");
+        }
+
+        // When
+        Database.setFile(oldFile);
+        Database.setUp();
+
+        // Then
+        Assertions.assertEquals(2, newDatabaseAutoVacuum);
+        try (Statement statement = Database.getConnection().createStatement()) {
+            Assertions.assertEquals(0, queryLong(statement, "PRAGMA auto_vacuum"));
+        }
+        Assertions.assertTrue(Database.enableIncrementalVacuum());
+        try (Statement statement = Database.getConnection().createStatement()) {
+            Assertions.assertEquals(2, queryLong(statement, "PRAGMA auto_vacuum"));
+        }
+    }
+
+    @Test
+    @DisplayName("Ensure seen url store calls from virtual threads run on a platform thread")
+    public void itShouldRunSeenStoreCallsOnPlatformThread() throws InterruptedException {
+        // Given
+        ThreadRecordingSeenStore seenStore = new ThreadRecordingSeenStore(true);
+        Database.setSeenStore(seenStore);
+
+        // When
+        Thread.ofVirtual()
+                .start(() -> Database.filterUnseen(List.of("https://karrierestart.no/ledig-stilling/1"), FULL_IP))
+                .join();
+
+        // Then
+        Assertions.assertNotNull(seenStore.callingThread.get());
+        Assertions.assertFalse(seenStore.callingThread.get().isVirtual());
+    }
+
+    @Test
+    @DisplayName("Ensure seen url store calls that do not use JDBC run on the calling thread")
+    public void itShouldRunSeenStoreCallsWithoutJdbcOnCallingThread() throws InterruptedException {
+        // Given
+        ThreadRecordingSeenStore seenStore = new ThreadRecordingSeenStore(false);
+        Database.setSeenStore(seenStore);
+        AtomicReference<Thread> virtualThread = new AtomicReference<>();
+
+        // When
+        Thread.ofVirtual()
+                .start(() -> {
+                    virtualThread.set(Thread.currentThread());
+                    Database.filterUnseen(List.of("https://karrierestart.no/ledig-stilling/1"), FULL_IP);
+                })
+                .join();
+
+        // Then
+        Assertions.assertSame(virtualThread.get(), seenStore.callingThread.get());
+    }
+
+    @Test
+    @DisplayName("Ensure the database driver never runs on the virtual threads checking and storing urls")
+    public void itShouldNotRunDriverOnVirtualThreads() throws SQLException {
+        // Given
+        List<String> unseenUrls = new ArrayList<>();
+        List<Thread> committingThreads = new CopyOnWriteArrayList<>();
+        // Called by the driver from its native code, on the thread running it
+        SQLiteCommitListener commitListener = new SQLiteCommitListener() {
+            @Override
+            public void onCommit() {
+                committingThreads.add(Thread.currentThread());
+            }
+
+            @Override
+            public void onRollback() {
+                committingThreads.add(Thread.currentThread());
+            }
+        };
+        SQLiteConnection connection = Database.getConnection().unwrap(SQLiteConnection.class);
+        connection.addCommitListener(commitListener);
+
+        // When
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            IntStream.range(0, 32).forEach(thread -> executorService.submit(() -> {
+                for (int page = 0; page < 20; page++) {
+                    List<String> urls = IntStream.range(0, 25)
+                            .mapToObj(i -> "https://karrierestart.no/ledig-stilling/" + thread + "0" + i)
+                            .toList();
+                    List<String> unseen = Database.filterUnseen(urls, FULL_IP);
+                    Database.insertUrls(unseen.stream().map(url -> new SeenUrl(url, null, null)).toList(), FULL_IP);
+                    synchronized (unseenUrls) {
+                        unseenUrls.addAll(unseen);
+                    }
+                }
+            }));
+        } finally {
+            connection.removeCommitListener(commitListener);
+        }
+
+        // Then
+        Assertions.assertEquals(32 * 25, unseenUrls.size());
+        Assertions.assertFalse(committingThreads.isEmpty());
+        Assertions.assertTrue(committingThreads.stream().noneMatch(Thread::isVirtual));
+    }
+
+    @Test
+    @DisplayName("Ensure the same job posted on another site is found as a duplicate")
+    public void itShouldFindJobPostSentBeforeFromAnotherSite() {
+        // Given
+        String description = "<p><strong>Vi søker etter Anleggsleder til Civil Engineering, Avdeling Øst.</strong> " +
+                "Du vil lede prosjekter innen vei, bane og infrastruktur i Oslo-området, og ha ansvar for fremdrift, " +
+                "økonomi, HMS og kvalitet. Vi tilbyr konkurransedyktige betingelser, gode pensjonsordninger " +
+                "og et godt arbeidsmiljø med dyktige kolleger.</p>";
+        JobPost sent = new JobPost.Builder("https://www.finn.no/job/ad/123", null, "Anleggsleder")
+                .setCompanyName("NCC Norge AS")
+                .setDescription(description)
+                .build();
+        JobPost crossPosted = new JobPost.Builder(
+                "https://arbeidsplassen.nav.no/stillinger/stilling/0b5c0d6e-1111-2222-3333-444455556666", null, "Anleggsleder")
+                .setCompanyName("NCC Norge")
+                .setDescription(description.replace("<p>", "").replace("</p>", "") + " Søknadsfrist: snarest.")
+                .build();
+        JobPost otherJob = new JobPost.Builder("https://karrierestart.no/ledig-stilling/5", null, "Lagermedarbeider")
+                .setCompanyName("Bama")
+                .setDescription("Vi søker lagermedarbeidere til vårt lager på Alnabru med oppstart snarest.")
+                .build();
+        Database.addFingerprints(List.of(sent), FULL_IP);
+
+        // When
+        Map<String, String> originals = Database.findOriginals(List.of(crossPosted, otherJob), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(Map.of(crossPosted.url(), "finn:123"), originals);
+    }
+
+    @Test
+    @DisplayName("Ensure job posts without an id from two different sites are found as duplicates")
+    public void itShouldFindJobPostWithoutIdSentBeforeFromAnotherSite() {
+        // Given
+        String description = "Vi søker en erfaren kokk til vår restaurant i Bergen sentrum. Du vil ha ansvar for " +
+                "menyutvikling, innkjøp og opplæring av lærlinger, og jobbe tett med resten av kjøkkenteamet.";
+        JobPost sent = new JobPost.Builder("https://www.finn.no/job/restaurant-kokk", null, "Kokk")
+                .setCompanyName("Bryggen Restaurant AS")
+                .setDescription(description)
+                .build();
+        JobPost crossPosted = new JobPost.Builder("https://jobs.example.com/kokk-bergen", null, "Kokk")
+                .setCompanyName("Bryggen Restaurant")
+                .setDescription(description)
+                .build();
+        Database.addFingerprints(List.of(sent), FULL_IP);
+
+        // When
+        Map<String, String> originals = Database.findOriginals(List.of(crossPosted), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(Map.of(crossPosted.url(), sent.url()), originals);
+    }
+
+    @Test
+    @DisplayName("Ensure dropping a target only forgets the urls sent to it")
+    public void itShouldForgetUrlsOfDroppedTarget() {
+        // Given
+        String stagingIp = "staging:8080";
+        String url = "https://karrierestart.no/ledig-stilling/1";
+        Database.insertUrls(List.of(new SeenUrl(url, null, null)), FULL_IP);
+        Database.insertUrls(List.of(new SeenUrl(url, null, null)), stagingIp);
+
+        // When
+        boolean dropped = Database.dropTarget(stagingIp);
+
+        // Then
+        Assertions.assertTrue(dropped);
+        Assertions.assertEquals(List.of(url), Database.filterUnseen(List.of(url), stagingIp));
+        Assertions.assertEquals(List.of(), Database.filterUnseen(List.of(url), FULL_IP));
+        Assertions.assertEquals(1, Database.purgeDroppedTargets(500));
+    }
+
+    @Test
+    @DisplayName("Ensure purging dropped targets moves on past a dropped target without rows left")
+    public void itShouldPurgeDroppedTargetsAfterOneWithoutRows() {
+        // Given
+        String url = "https://karrierestart.no/ledig-stilling/1";
+        Database.insertUrls(List.of(new SeenUrl(url, null, null)), "staging:8080");
+        Database.insertUrls(List.of(new SeenUrl(url, null, null)), "test:8080");
+        Database.dropTarget("staging:8080");
+        Database.dropTarget("test:8080");
+        // Leaves the first dropped target without rows
+        Database.purgeDroppedTargets(1);
+
+        // When
+        int removed = Database.purgeDroppedTargets(500);
+
+        // Then
+        Assertions.assertEquals(1, removed);
+        Assertions.assertEquals(0, Database.purgeDroppedTargets(500));
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Stores nothing, and remembers the thread it was last called from.
+     */
+    private static class ThreadRecordingSeenStore implements ISeenStore {
+
+        private final AtomicReference<Thread> callingThread = new AtomicReference<>();
+        private final boolean usesJdbc;
+
+        ThreadRecordingSeenStore(boolean usesJdbc) {
+            this.usesJdbc = usesJdbc;
+        }
+
+        @Override
+        public boolean usesJdbc() {
+            return usesJdbc;
+        }
+
+        @Override
+        public boolean exists(String url, String fullIp) {
+            callingThread.set(Thread.currentThread());
+            return false;
+        }
+
+        @Override
+        public List<String> filterUnseen(List<String> urls, String fullIp) {
+            callingThread.set(Thread.currentThread());
+            return urls;
+        }
+
+        @Override
+        public void insertUrl(String url, String fullIp) {
+            callingThread.set(Thread.currentThread());
+        }
+
+        @Override
+        public List<String> insertUrls(List<SeenUrl> seenUrls, String fullIp) {
+            callingThread.set(Thread.currentThread());
+            return List.of();
+        }
+
+        @Override
+        public Map<String, Long> findDueForRevisit(List<String> urls, String fullIp, long now) {
+            callingThread.set(Thread.currentThread());
+            return Map.of();
+        }
+
+        @Override
+        public void updateUrls(List<SeenUrl> seenUrls, String fullIp) {
+            callingThread.set(Thread.currentThread());
+        }
+
+        @Override
+        public int purgeExpired(long now, int maxRows) {
+            callingThread.set(Thread.currentThread());
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package no.jobbscraper.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+public class MappedSeenStoreTest {
+
+    private static final String FULL_IP = "localhost:8080";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int HEADER_BYTES = 64;
+    private static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES;
+    private static final int BATCH_SIZE = 10_000;
+    // The number of urls that fills the initial table up to its load factor
+    private static final int FULL_TABLE_URLS =
+            (int) Math.ceil(MappedSeenStore.INITIAL_CAPACITY * MappedSeenStore.MAX_LOAD_FACTOR);
+
+    @TempDir
+    private Path folder;
+    private Path tablePath;
+    private MappedSeenStore seenStore;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Database.setFile(folder.resolve("test.db"));
+        Database.setUp();
+        tablePath = folder.resolve("seen.bin");
+        seenStore = MappedSeenStore.open(tablePath, FALSE_POSITIVE_RATE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        seenStore.close();
+        Database.setFile(Path.of("test.db"));
+    }
+
+    @Test
+    @DisplayName("Ensure an inserted url exists for its ip only")
+    public void itShouldFindInsertedUrl() {
+        // Given
+        String url = jobUrl(1);
+
+        // When
+        List<String> conflicts = seenStore.insertUrls(List.of(new SeenUrl(url, null, null)), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(List.of(), conflicts);
+        Assertions.assertTrue(seenStore.exists(url, FULL_IP));
+        Assertions.assertFalse(seenStore.exists(jobUrl(2), FULL_IP));
+        Assertions.assertFalse(seenStore.exists(url, "staging:8080"));
+        Assertions.assertEquals(List.of(url), seenStore.insertUrls(List.of(new SeenUrl(url, null, null)), FULL_IP));
+        Assertions.assertFalse(seenStore.usesJdbc());
+    }
+
+    @Test
+    @DisplayName("Ensure no url is lost when inserted from many virtual threads at once")
+    public void itShouldNotLoseUrlsInsertedConcurrently() throws Exception {
+        // Given
+        int threads = 32;
+        int urlsPerThread = 2_000;
+        List<SeenUrl> sharedUrls = seenUrls(0, urlsPerThread);
+
+        // When
+        List<Future<List<String>>> ownConflicts = new ArrayList<>();
+        List<Future<List<String>>> sharedConflicts = new ArrayList<>();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int thread = 1; thread <= threads; thread++) {
+                List<SeenUrl> ownUrls = seenUrls(thread * urlsPerThread, urlsPerThread);
+                ownConflicts.add(executorService.submit(() -> seenStore.insertUrls(ownUrls, FULL_IP)));
+                sharedConflicts.add(executorService.submit(() -> seenStore.insertUrls(sharedUrls, FULL_IP)));
+            }
+        }
+
+        // Then
+        for (Future<List<String>> conflicts : ownConflicts) {
+            Assertions.assertEquals(List.of(), conflicts.get());
+        }
+        // Each shared url is taken by exactly one thread, and a conflict for every other
+        int sharedConflictCount = 0;
+        for (Future<List<String>> conflicts : sharedConflicts) {
+            sharedConflictCount += conflicts.get().size();
+        }
+        Assertions.assertEquals((threads - 1) * urlsPerThread, sharedConflictCount);
+        List<String> allUrls = IntStream.range(0, (threads + 1) * urlsPerThread).mapToObj(MappedSeenStoreTest::jobUrl).toList();
+        Assertions.assertEquals(List.of(), seenStore.filterUnseen(allUrls, FULL_IP));
+    }
+
+    @Test
+    @DisplayName("Ensure the table grows past its initial capacity without losing urls")
+    public void itShouldGrowPastInitialCapacity() throws IOException {
+        // Given
+        int urls = FULL_TABLE_URLS + 1_000;
+
+        // When
+        insertInBatches(0, urls);
+
+        // Then
+        Assertions.assertEquals(HEADER_BYTES + 2L * MappedSeenStore.INITIAL_CAPACITY * BYTES_PER_SLOT, Files.size(tablePath));
+        List<String> allUrls = IntStream.range(0, urls).mapToObj(MappedSeenStoreTest::jobUrl).toList();
+        Assertions.assertEquals(List.of(), seenStore.filterUnseen(allUrls, FULL_IP));
+        Assertions.assertFalse(seenStore.usesJdbc());
+    }
+
+    @Test
+    @DisplayName("Ensure urls are still seen after the file is opened again")
+    public void itShouldFindUrlsAfterReopening() throws IOException {
+        // Given
+        List<SeenUrl> urls = seenUrls(0, 100);
+        seenStore.insertUrls(urls, FULL_IP);
+
+        // When
+        seenStore.close();
+        seenStore = MappedSeenStore.open(tablePath, FALSE_POSITIVE_RATE);
+
+        // Then
+        Assertions.assertEquals(List.of(), seenStore.filterUnseen(urls.stream().map(SeenUrl::url).toList(), FULL_IP));
+        Assertions.assertEquals(List.of(jobUrl(100)), seenStore.filterUnseen(List.of(jobUrl(100)), FULL_IP));
+    }
+
+    @Test
+    @DisplayName("Ensure urls that do not fit in a full table are stored in the database, also after reopening")
+    public void itShouldOverflowIntoDatabaseWhenFull() throws IOException {
+        // Given
+        seenStore.close();
+        seenStore = MappedSeenStore.open(tablePath, FALSE_POSITIVE_RATE, MappedSeenStore.INITIAL_CAPACITY);
+        insertInBatches(0, FULL_TABLE_URLS);
+        String overflowedUrl = jobUrl(FULL_TABLE_URLS);
+
+        // When
+        List<String> conflicts = seenStore.insertUrls(List.of(new SeenUrl(overflowedUrl, null, null)), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(List.of(), conflicts);
+        Assertions.assertTrue(seenStore.usesJdbc());
+        Assertions.assertEquals(HEADER_BYTES + (long) MappedSeenStore.INITIAL_CAPACITY * BYTES_PER_SLOT, Files.size(tablePath));
+        Assertions.assertTrue(seenStore.exists(overflowedUrl, FULL_IP));
+        Assertions.assertTrue(seenStore.exists(jobUrl(0), FULL_IP));
+        Assertions.assertEquals(List.of(overflowedUrl),
+                seenStore.insertUrls(List.of(new SeenUrl(overflowedUrl, null, null)), FULL_IP));
+
+        seenStore.close();
+        seenStore = MappedSeenStore.open(tablePath, FALSE_POSITIVE_RATE, MappedSeenStore.INITIAL_CAPACITY);
+        Assertions.assertTrue(seenStore.usesJdbc());
+        Assertions.assertTrue(seenStore.exists(overflowedUrl, FULL_IP));
+        Assertions.assertFalse(seenStore.exists(jobUrl(FULL_TABLE_URLS + 1), FULL_IP));
+    }
+
+    private void insertInBatches(int firstId, int count) {
+        for (int id = firstId; id < firstId + count; id += BATCH_SIZE) {
+            List<SeenUrl> batch = seenUrls(id, Math.min(BATCH_SIZE, firstId + count - id));
+            Assertions.assertEquals(List.of(), seenStore.insertUrls(batch, FULL_IP));
+        }
+    }
+
+    private static List<SeenUrl> seenUrls(int firstId, int count) {
+        return IntStream.range(firstId, firstId + count)
+                .mapToObj(id -> new SeenUrl(jobUrl(id), null, null))
+                .toList();
+    }
+
+    private static String jobUrl(int id) {
+        return "https://karrierestart.no/ledig-stilling/" + id;
+    }
+}
@@ -0,0 +1,157 @@
+package no.jobbscraper.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+public class SeenUrlWriterTest {
+
+    private static final String FULL_IP = "localhost:8080";
+    private static final Duration GROUP_WINDOW = Duration.ofMillis(200);
+    // Long enough that a group is never committed by its window during a test
+    private static final Duration ENDLESS_GROUP_WINDOW = Duration.ofHours(1);
+    private static final long WAIT_MILLIS = 5000;
+
+    @TempDir
+    private Path folder;
+    private SeenUrlWriter seenUrlWriter;
+
+    @BeforeEach
+    public void setUp() {
+        Database.setFile(folder.resolve("test.db"));
+        Database.setUp();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Database.setSeenUrlWriter(null);
+        if (seenUrlWriter != null) {
+            seenUrlWriter.close();
+        }
+        Database.setFile(Path.of("test.db"));
+    }
+
+    @Test
+    @DisplayName("Ensure a group is written as soon as it is full, without waiting for the group window")
+    public void itShouldWriteGroupWhenFull() throws Exception {
+        // Given
+        useSeenUrlWriter(ENDLESS_GROUP_WINDOW);
+        for (int write = 0; write < 5; write++) {
+            Database.insertUrlsLater(seenUrls(write * 100, 100), FULL_IP);
+        }
+        Thread.sleep(GROUP_WINDOW.toMillis());
+        Assertions.assertEquals(0, countStoredUrls());
+
+        // When
+        for (int write = 5; write < 10; write++) {
+            Database.insertUrlsLater(seenUrls(write * 100, 100), FULL_IP);
+        }
+
+        // Then
+        waitUntil(() -> Database.getWriteQueueDepth() == 0);
+        Assertions.assertEquals(1000, countStoredUrls());
+    }
+
+    @Test
+    @DisplayName("Ensure a group that is not full is written once the group window has passed")
+    public void itShouldWriteGroupWhenWindowEnds() throws Exception {
+        // Given
+        useSeenUrlWriter(GROUP_WINDOW);
+        long start = System.nanoTime();
+
+        // When
+        Database.insertUrlsLater(seenUrls(0, 10), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(10, Database.getWriteQueueDepth());
+        waitUntil(() -> Database.getWriteQueueDepth() == 0);
+        Assertions.assertTrue(System.nanoTime() - start >= GROUP_WINDOW.toNanos());
+        Assertions.assertEquals(10, countStoredUrls());
+    }
+
+    @Test
+    @DisplayName("Ensure closing the writer writes everything still in the queue")
+    public void itShouldDrainQueueOnClose() throws Exception {
+        // Given
+        useSeenUrlWriter(ENDLESS_GROUP_WINDOW);
+        for (int write = 0; write < 3; write++) {
+            Database.insertUrlsLater(seenUrls(write * 10, 10), FULL_IP);
+        }
+
+        // When
+        long start = System.nanoTime();
+        seenUrlWriter.close();
+
+        // Then
+        Assertions.assertTrue(System.nanoTime() - start < Duration.ofMillis(WAIT_MILLIS).toNanos());
+        Assertions.assertEquals(0, seenUrlWriter.getQueueDepth());
+        Assertions.assertEquals(30, countStoredUrls());
+    }
+
+    @Test
+    @DisplayName("Ensure queued urls count as seen before they are written")
+    public void itShouldCountQueuedUrlsAsSeen() throws Exception {
+        // Given
+        useSeenUrlWriter(ENDLESS_GROUP_WINDOW);
+        String queuedUrl = jobUrl(1);
+        String otherUrl = jobUrl(2);
+
+        // When
+        Database.insertUrlsLater(List.of(new SeenUrl(queuedUrl, null, null)), FULL_IP);
+
+        // Then
+        Assertions.assertEquals(0, countStoredUrls());
+        Assertions.assertTrue(Database.exists(queuedUrl, FULL_IP));
+        Assertions.assertFalse(Database.exists(queuedUrl, "staging:8080"));
+        Assertions.assertEquals(List.of(otherUrl), Database.filterUnseen(List.of(queuedUrl, otherUrl), FULL_IP));
+
+        seenUrlWriter.close();
+        Assertions.assertEquals(1, countStoredUrls());
+        Assertions.assertEquals(List.of(otherUrl), Database.filterUnseen(List.of(queuedUrl, otherUrl), FULL_IP));
+    }
+
+    private void useSeenUrlWriter(Duration groupWindow) {
+        seenUrlWriter = new SeenUrlWriter(64, groupWindow);
+        Database.setSeenUrlWriter(seenUrlWriter);
+    }
+
+    private static long countStoredUrls() throws SQLException {
+        Database.lock.lock();
+        try (Statement statement = Database.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM SEEN_JOBS")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        } finally {
+            Database.lock.unlock();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofMillis(WAIT_MILLIS).toNanos();
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Timed out waiting for the seen url writer");
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<SeenUrl> seenUrls(int firstId, int count) {
+        return IntStream.range(firstId, firstId + count)
+                .mapToObj(id -> new SeenUrl(jobUrl(id), null, null))
+                .toList();
+    }
+
+    private static String jobUrl(int id) {
+        return "https://karrierestart.no/ledig-stilling/" + id;
+    }
+}
@@ -0,0 +1,71 @@
+package no.jobbscraper.http;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class BackoffTest {
+
+    private static final int SAMPLES = 1000;
+
+    @Test
+    @DisplayName("Ensure the first retry waits at most the base delay")
+    void itShouldWaitAtMostBaseDelayOnFirstRetry() {
+        // Given
+        Duration baseDelay = Duration.ofMillis(500);
+
+        // When
+        // Then
+        for (int i = 0; i < SAMPLES; i++) {
+            Duration delay = Backoff.delay(1, null);
+            Assertions.assertFalse(delay.isNegative());
+            Assertions.assertTrue(delay.compareTo(baseDelay) <= 0, delay.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Ensure the delay never exceeds the max delay, however many attempts failed")
+    void itShouldCapDelayAtMaxDelay() {
+        // Given
+        Duration maxDelay = Duration.ofSeconds(30);
+        int[] attempts = {7, 8, 17, 64, Integer.MAX_VALUE};
+
+        // When
+        // Then
+        for (int attempt : attempts) {
+            for (int i = 0; i < SAMPLES; i++) {
+                Duration delay = Backoff.delay(attempt, null);
+                Assertions.assertFalse(delay.isNegative());
+                Assertions.assertTrue(delay.compareTo(maxDelay) <= 0, attempt + ": " + delay);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Ensure the delay asked for by the server is used as is")
+    void itShouldUseRetryAfter() {
+        // Given
+        Duration retryAfter = Duration.ofSeconds(90);
+
+        // When
+        Duration delay = Backoff.delay(1, retryAfter);
+
+        // Then
+        Assertions.assertEquals(retryAfter, delay);
+    }
+
+    @Test
+    @DisplayName("Ensure the delay asked for by the server is capped at 5 minutes")
+    void itShouldCapRetryAfterAtFiveMinutes() {
+        // Given
+        Duration retryAfter = Duration.ofHours(2);
+
+        // When
+        Duration delay = Backoff.delay(1, retryAfter);
+
+        // Then
+        Assertions.assertEquals(Duration.ofMinutes(5), delay);
+    }
+}
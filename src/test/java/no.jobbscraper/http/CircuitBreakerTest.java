@@ -0,0 +1,123 @@
+package no.jobbscraper.http;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class CircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+
+    @Test
+    @DisplayName("Ensure the breaker opens after the failure threshold and fails fast")
+    void itShouldOpenAfterFailureThreshold() {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", FAILURE_THRESHOLD, Duration.ofHours(1));
+
+        // When
+        for (int i = 1; i < FAILURE_THRESHOLD; i++) {
+            Assertions.assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.recordFailure();
+            Assertions.assertFalse(circuitBreaker.isOpen());
+        }
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordFailure();
+
+        // Then
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        Assertions.assertFalse(circuitBreaker.allowRequest());
+        Assertions.assertTrue(circuitBreaker.getRemainingCoolDown().compareTo(Duration.ZERO) > 0);
+    }
+
+    @Test
+    @DisplayName("Ensure a success resets the count of failures in a row")
+    void itShouldResetFailuresOnSuccess() {
+        // Given
+        CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", FAILURE_THRESHOLD, Duration.ofHours(1));
+
+        // When
+        for (int i = 1; i < FAILURE_THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        // Then
+        Assertions.assertFalse(circuitBreaker.isOpen());
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    @DisplayName("Ensure only a single probe is let through half open")
+    void itShouldLetSingleProbeThroughHalfOpen() {
+        // Given
+        CircuitBreaker circuitBreaker = openedBreakerWithoutCoolDown();
+
+        // When
+        boolean probeAllowed = circuitBreaker.allowRequest();
+        boolean secondAllowed = circuitBreaker.allowRequest();
+
+        // Then
+        Assertions.assertTrue(probeAllowed);
+        Assertions.assertFalse(secondAllowed);
+        Assertions.assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    @DisplayName("Ensure a successful probe closes the breaker")
+    void itShouldCloseWhenProbeSucceeds() {
+        // Given
+        CircuitBreaker circuitBreaker = openedBreakerWithoutCoolDown();
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+
+        // When
+        circuitBreaker.recordSuccess();
+
+        // Then
+        Assertions.assertFalse(circuitBreaker.isOpen());
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    @DisplayName("Ensure a failed probe opens the breaker again")
+    void itShouldOpenAgainWhenProbeFails() {
+        // Given
+        CircuitBreaker circuitBreaker = openedBreakerWithoutCoolDown();
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+        Assertions.assertFalse(circuitBreaker.isOpen());
+
+        // When
+        circuitBreaker.recordFailure();
+
+        // Then
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        Assertions.assertTrue(circuitBreaker.getStatistics().contains("opened 2 times"));
+    }
+
+    @Test
+    @DisplayName("Ensure a released probe lets another request probe the host")
+    void itShouldLetAnotherProbeThroughWhenReleased() {
+        // Given
+        CircuitBreaker circuitBreaker = openedBreakerWithoutCoolDown();
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+
+        // When
+        circuitBreaker.releaseProbe();
+
+        // Then
+        Assertions.assertTrue(circuitBreaker.allowRequest());
+        Assertions.assertFalse(circuitBreaker.allowRequest());
+    }
+
+    private static CircuitBreaker openedBreakerWithoutCoolDown() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", FAILURE_THRESHOLD, Duration.ZERO);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        return circuitBreaker;
+    }
+}
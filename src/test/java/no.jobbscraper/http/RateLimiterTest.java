@@ -0,0 +1,47 @@
+package no.jobbscraper.http;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    @DisplayName("Ensure a rate limit with a burst is parsed")
+    void itShouldParseRateLimitWithBurst() {
+        // Given
+        String value = "2.5:5";
+
+        // When
+        RateLimiter rateLimiter = RateLimiter.parse(value);
+
+        // Then
+        Assertions.assertEquals("2.5 requests/s, burst 5", rateLimiter.toString());
+    }
+
+    @Test
+    @DisplayName("Ensure the burst defaults to the rate rounded up")
+    void itShouldDefaultBurstToRateRoundedUp() {
+        // Given
+        String value = "2.5";
+
+        // When
+        RateLimiter rateLimiter = RateLimiter.parse(value);
+
+        // Then
+        Assertions.assertEquals("2.5 requests/s, burst 3", rateLimiter.toString());
+    }
+
+    @Test
+    @DisplayName("Ensure invalid rate limits are rejected")
+    void itShouldRejectInvalidRateLimits() {
+        // Given
+        String[] values = {"0", "-1", "NaN", "NaN:5", "Infinity", "Infinity:5", "1:0", "1:2:3", "fast", "1:many"};
+
+        // When
+        // Then
+        for (String value : values) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> RateLimiter.parse(value), value);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package no.jobbscraper.http;
+
+import no.jobbscraper.http.ResponseCache.CachedResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class ResponseCacheTest {
+
+    private static final String URL = "https://www.finn.no/job/fulltime/ad.html?finnkode=1";
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    @DisplayName("Ensure a cached page is returned with its validators")
+    void itShouldReturnCachedPage() throws IOException {
+        // Given
+        ResponseCache cache = new ResponseCache(folder, UNLIMITED);
+        CachedResponse response = page("<html>job</html>", Instant.now());
+
+        // When
+        cache.put(URL, response);
+        Optional<CachedResponse> cached = cache.get(URL);
+
+        // Then
+        Assertions.assertTrue(cached.isPresent());
+        Assertions.assertArrayEquals(response.body(), cached.get().body());
+        Assertions.assertEquals(response.validators(), cached.get().validators());
+        Assertions.assertEquals(response.fetchedAt().toEpochMilli(), cached.get().fetchedAt().toEpochMilli());
+        Assertions.assertTrue(cache.get("https://www.finn.no/job/fulltime/ad.html?finnkode=2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ensure a cached page is only fresh while younger than the max age")
+    void itShouldOnlyBeFreshWithinMaxAge() {
+        // Given
+        Instant now = Instant.now();
+        CachedResponse recent = page("recent", now.minus(Duration.ofMinutes(5)));
+        CachedResponse old = page("old", now.minus(Duration.ofHours(2)));
+
+        // When
+        // Then
+        Assertions.assertTrue(recent.isFresh(Duration.ofHours(1)));
+        Assertions.assertFalse(recent.isFresh(Duration.ZERO));
+        Assertions.assertFalse(old.isFresh(Duration.ofHours(1)));
+    }
+
+    @Test
+    @DisplayName("Ensure the least recently used pages are evicted down to 90% of the budget")
+    void itShouldEvictLeastRecentlyUsedPages() throws IOException {
+        // Given
+        Random random = new Random(42);
+        byte[][] bodies = new byte[11][];
+        for (int i = 0; i < bodies.length; i++) {
+            // Random bytes do not compress, so every blob has about the same size
+            bodies[i] = new byte[4096];
+            random.nextBytes(bodies[i]);
+        }
+
+        ResponseCache filledCache = new ResponseCache(folder, UNLIMITED);
+        Instant longAgo = Instant.now().minus(Duration.ofDays(1));
+        for (int i = 0; i < 10; i++) {
+            filledCache.put(urlOf(i), page(bodies[i], Instant.now()));
+            // Page 0 was used first and page 9 last
+            Files.setLastModifiedTime(blobPath(bodies[i]), FileTime.from(longAgo.plusSeconds(i)));
+        }
+        long blobSize = Files.size(blobPath(bodies[0]));
+        long maxBytes = blobSize * 11 / 2;
+
+        // When
+        ResponseCache cache = new ResponseCache(folder, maxBytes);
+        cache.put(urlOf(10), page(bodies[10], Instant.now()));
+
+        // Then
+        Assertions.assertTrue(blobBytes() <= maxBytes * 0.9, blobBytes() + " > 90% of " + maxBytes);
+        for (int i = 0; i < 7; i++) {
+            Assertions.assertTrue(cache.get(urlOf(i)).isEmpty(), urlOf(i));
+        }
+        for (int i = 7; i <= 10; i++) {
+            Assertions.assertTrue(cache.get(urlOf(i)).isPresent(), urlOf(i));
+        }
+        try (Stream<Path> entries = Files.list(folder.resolve("entries"))) {
+            Assertions.assertEquals(4, entries.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Ensure a page whose blob was cut short counts as a miss")
+    void itShouldMissWhenBlobIsTruncated() throws IOException {
+        // Given
+        ResponseCache cache = new ResponseCache(folder, UNLIMITED);
+        byte[] body = "<html>a page long enough to be cut in half</html>".getBytes(StandardCharsets.UTF_8);
+        cache.put(URL, page(body, Instant.now()));
+        Path blobPath = blobPath(body);
+        byte[] blob = Files.readAllBytes(blobPath);
+
+        // When
+        Files.write(blobPath, Arrays.copyOf(blob, blob.length / 2));
+
+        // Then
+        Assertions.assertTrue(cache.get(URL).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ensure a corrupt entry counts as a miss and is removed on the next run")
+    void itShouldRemoveCorruptEntry() throws IOException {
+        // Given
+        ResponseCache cache = new ResponseCache(folder, UNLIMITED);
+        cache.put(URL, page("<html>job</html>", Instant.now()));
+        Path entryPath = folder.resolve("entries").resolve(sha256(URL.getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        Files.writeString(entryPath, "not an entry \\u00");
+        Optional<CachedResponse> cached = cache.get(URL);
+        new ResponseCache(folder, UNLIMITED);
+
+        // Then
+        Assertions.assertTrue(cached.isEmpty());
+        Assertions.assertFalse(Files.exists(entryPath));
+    }
+
+    @Test
+    @DisplayName("Ensure unfinished files and entries without a blob are removed on the next run")
+    void itShouldRemovePartialFilesOnOpen() throws IOException {
+        // Given
+        ResponseCache cache = new ResponseCache(folder, UNLIMITED);
+        byte[] body = "<html>job</html>".getBytes(StandardCharsets.UTF_8);
+        cache.put(URL, page(body, Instant.now()));
+        Path entryTemporaryPath = Files.createTempFile(folder.resolve("entries"), "entry", ".tmp");
+        Path blobTemporaryPath = Files.createTempFile(folder.resolve("blobs"), "blob", ".tmp");
+        Files.delete(blobPath(body));
+
+        // When
+        ResponseCache reopened = new ResponseCache(folder, UNLIMITED);
+
+        // Then
+        Assertions.assertFalse(Files.exists(entryTemporaryPath));
+        Assertions.assertFalse(Files.exists(blobTemporaryPath));
+        Assertions.assertTrue(reopened.get(URL).isEmpty());
+        try (Stream<Path> entries = Files.list(folder.resolve("entries"))) {
+            Assertions.assertEquals(0, entries.count());
+        }
+    }
+
+    private static CachedResponse page(String body, Instant fetchedAt) {
+        return page(body.getBytes(StandardCharsets.UTF_8), fetchedAt);
+    }
+
+    private static CachedResponse page(byte[] body, Instant fetchedAt) {
+        return new CachedResponse(body, "UTF-8", URL, new Validators("\"etag\"", null), fetchedAt);
+    }
+
+    private static String urlOf(int finnkode) {
+        return "https://www.finn.no/job/fulltime/ad.html?finnkode=" + finnkode;
+    }
+
+    private Path blobPath(byte[] body) {
+        return folder.resolve("blobs").resolve(sha256(body));
+    }
+
+    private long blobBytes() throws IOException {
+        try (Stream<Path> blobs = Files.list(folder.resolve("blobs"))) {
+            long total = 0;
+            for (Path blob : blobs.toList()) {
+                total += Files.size(blob);
+            }
+            return total;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
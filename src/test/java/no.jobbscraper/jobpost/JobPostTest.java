@@ -0,0 +1,75 @@
+package no.jobbscraper.jobpost;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class JobPostTest {
+
+    private static final String URL = "https://www.finn.no/job/fulltime/ad.html?finnkode=349553613";
+    private static final String DESCRIPTION = "Vi søker en erfaren kokk til vår restaurant i Bergen sentrum.";
+    private static final LocalDate DEADLINE = LocalDate.of(2024, 10, 20);
+
+    @Test
+    @DisplayName("Ensure the digest is the same for every build of an unchanged job post")
+    void itShouldKeepDigestForUnchangedJobPost() {
+        // Given
+        JobPost jobPost = jobPost(DESCRIPTION, DEADLINE, List.of("Heltid", "Fast"));
+        JobPost sameJobPost = jobPost(DESCRIPTION, DEADLINE, List.of("Fast", "Heltid"));
+
+        // When
+        long digest = jobPost.digest();
+
+        // Then
+        Assertions.assertEquals(digest, jobPost.digest());
+        Assertions.assertEquals(digest, sameJobPost.digest());
+        Assertions.assertEquals(digest, jobPost.asUpdate().digest());
+        Assertions.assertEquals(digest, jobPost.asDuplicateOf("finn:1").digest());
+    }
+
+    @Test
+    @DisplayName("Ensure the digest changes when the description changes")
+    void itShouldChangeDigestWhenDescriptionChanges() {
+        // Given
+        JobPost jobPost = jobPost(DESCRIPTION, DEADLINE, List.of("Heltid"));
+        JobPost editedJobPost = jobPost(DESCRIPTION + " Søknadsfrist: snarest.", DEADLINE, List.of("Heltid"));
+
+        // When
+        // Then
+        Assertions.assertNotEquals(jobPost.digest(), editedJobPost.digest());
+    }
+
+    @Test
+    @DisplayName("Ensure the digest changes when the deadline changes")
+    void itShouldChangeDigestWhenDeadlineChanges() {
+        // Given
+        JobPost jobPost = jobPost(DESCRIPTION, DEADLINE, List.of("Heltid"));
+        JobPost extendedJobPost = jobPost(DESCRIPTION, DEADLINE.plusWeeks(2), List.of("Heltid"));
+        JobPost withoutDeadline = jobPost(DESCRIPTION, null, List.of("Heltid"));
+
+        // When
+        // Then
+        Assertions.assertNotEquals(jobPost.digest(), extendedJobPost.digest());
+        Assertions.assertNotEquals(jobPost.digest(), withoutDeadline.digest());
+    }
+
+    private static JobPost jobPost(String description, LocalDate deadline, List<String> tags) {
+        Map<String, Set<String>> definitionMap = new LinkedHashMap<>();
+        definitionMap.put("Sektor", Set.of("Privat"));
+        definitionMap.put("Stillingsfunksjon", new LinkedHashSet<>(tags));
+        return new JobPost.Builder(URL, null, "Kokk")
+                .setCompanyName("Bryggen Restaurant AS")
+                .setDescription(description)
+                .setDeadline(deadline)
+                .setTags(new LinkedHashSet<>(tags))
+                .setDefinitionMap(definitionMap)
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package no.jobbscraper.restapiclient;
+
+import no.jobbscraper.jobpost.JobPost;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BaseRestApiClientTest {
+
+    private static final long WAIT_MILLIS = 5000;
+
+    @Test
+    @DisplayName("Ensure no more than the maximum number of posts are in flight at once")
+    void itShouldLimitPostsInFlight() throws InterruptedException {
+        // Given
+        SlowRestApi restApi = new SlowRestApi();
+        FakeRestApiClient client = new FakeRestApiClient(restApi::answerLater);
+        int posts = BaseRestApiClient.DEFAULT_MAX_IN_FLIGHT_POSTS + 4;
+
+        // When
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int post = 0; post < posts; post++) {
+            results.add(client.postJobsAsync(jobPosts(post)));
+        }
+
+        // Then
+        Assertions.assertEquals(BaseRestApiClient.DEFAULT_MAX_IN_FLIGHT_POSTS, restApi.received.get());
+        for (int post = 0; post < posts; post++) {
+            restApi.answerNext(true);
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            Assertions.assertTrue(result.join());
+        }
+        Assertions.assertEquals(posts, restApi.received.get());
+        Assertions.assertEquals(BaseRestApiClient.DEFAULT_MAX_IN_FLIGHT_POSTS, restApi.maxInFlight.get());
+    }
+
+    @Test
+    @DisplayName("Ensure callers wait once the post queue is full, until a post is answered")
+    void itShouldBlockCallersWhenQueueIsFull() throws InterruptedException {
+        // Given
+        SlowRestApi restApi = new SlowRestApi();
+        FakeRestApiClient client = new FakeRestApiClient(restApi::answerLater);
+        for (int post = 0; post < BaseRestApiClient.POST_QUEUE_CAPACITY; post++) {
+            client.postJobsAsync(jobPosts(post));
+        }
+
+        // When
+        AtomicReference<CompletableFuture<Boolean>> blockedResult = new AtomicReference<>();
+        Thread caller = Thread.ofVirtual().start(() ->
+                blockedResult.set(client.postJobsAsync(jobPosts(BaseRestApiClient.POST_QUEUE_CAPACITY))));
+        waitUntilWaiting(caller);
+
+        // Then
+        Assertions.assertNull(blockedResult.get());
+        restApi.answerNext(true);
+        Assertions.assertTrue(caller.join(Duration.ofMillis(WAIT_MILLIS)));
+        Assertions.assertNotNull(blockedResult.get());
+    }
+
+    @Test
+    @DisplayName("Ensure a rejected or failed post completes its result, and frees its place for the next post")
+    void itShouldCompleteRejectedAndFailedPosts() throws InterruptedException {
+        // Given
+        SlowRestApi restApi = new SlowRestApi();
+        FakeRestApiClient client = new FakeRestApiClient(restApi::answerLater);
+        CompletableFuture<Boolean> rejected = client.postJobsAsync(jobPosts(0));
+        CompletableFuture<Boolean> failed = client.postJobsAsync(jobPosts(1));
+        CompletableFuture<Boolean> queued = client.postJobsAsync(jobPosts(2));
+
+        // When
+        restApi.answerNext(false);
+        restApi.failNext();
+        restApi.answerNext(true);
+
+        // Then
+        Assertions.assertFalse(rejected.join());
+        Assertions.assertTrue(failed.isCompletedExceptionally());
+        Assertions.assertTrue(queued.join());
+    }
+
+    private static void waitUntilWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+        while (thread.getState() != Thread.State.WAITING) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Timed out waiting for the caller to block");
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<JobPost> jobPosts(int post) {
+        return List.of(new JobPost.Builder("https://karrierestart.no/ledig-stilling/" + post, null, "Kokk").build());
+    }
+
+    /**
+     * A REST API that answers each post only when the test tells it to, in the order the posts were received.
+     */
+    private static class SlowRestApi {
+
+        private final BlockingQueue<CompletableFuture<Boolean>> unanswered = new LinkedBlockingQueue<>();
+        private final AtomicInteger received = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        CompletableFuture<Boolean> answerLater(List<JobPost> jobPosts) {
+            received.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<Boolean> answer = new CompletableFuture<>();
+            unanswered.add(answer);
+            return answer;
+        }
+
+        void answerNext(boolean posted) throws InterruptedException {
+            CompletableFuture<Boolean> answer = takeNext();
+            inFlight.decrementAndGet();
+            answer.complete(posted);
+        }
+
+        void failNext() throws InterruptedException {
+            CompletableFuture<Boolean> answer = takeNext();
+            inFlight.decrementAndGet();
+            answer.completeExceptionally(new IOException("Connection refused"));
+        }
+
+        private CompletableFuture<Boolean> takeNext() throws InterruptedException {
+            CompletableFuture<Boolean> answer = unanswered.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            Assertions.assertNotNull(answer, "No post is waiting for an answer");
+            return answer;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package no.jobbscraper.webscraper;
 
 import no.jobbscraper.HtmlDocumentProvider;
+import no.jobbscraper.url.JobSource;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class ArbeidsplassenNavScraperTest extends HtmlDocumentProvider {
 
@@ -59,6 +65,37 @@ public class ArbeidsplassenNavScraperTest extends HtmlDocumentProvider {
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    @DisplayName("Ensure the url of a page ahead matches the url once the scraper gets there")
+    void itShouldGetUrlForPageAhead() {
+        // Given
+        int page = 3;
+        String expected = "https://arbeidsplassen.nav.no/stillinger?from=" + page * 25;
+
+        // When
+        String actual = scraper.getUrlForPage(page);
+
+        // Then
+        Assertions.assertEquals(expected, actual);
+        scraper.setPage(page);
+        Assertions.assertEquals(actual, scraper.getCurrentUrl());
+        scraper.setPage(1);
+    }
+
+    @Test
+    @DisplayName("Ensure the max page is computed from the number of hits")
+    void itShouldExtractMaxPageFromDoc() {
+        // Given
+        Document document = getListViewDocument();
+        int expected = (15057 - 1) / 25;
+
+        // When
+        int actual = ((ArbeidsplassenNavScraper) scraper).extractMaxPageFromDoc(document);
+
+        // Then
+        Assertions.assertEquals(expected, actual);
+    }
+
     @Test
     @DisplayName("Ensure extracting url works")
     public void itShouldExtractUrlForJobPostFromElement() {
@@ -73,6 +110,37 @@ public class ArbeidsplassenNavScraperTest extends HtmlDocumentProvider {
         Assertions.assertTrue(actual.startsWith("https://arbeidsplassen.nav.no"));
     }
 
+    @Test
+    @DisplayName("Ensure the job post url has a job id, also with tracking parameters")
+    void itShouldExtractJobIdFromUrlForJobPost() {
+        // Given
+        String url = scraper.getCurrentUrl();
+        Document document = getListViewDocument();
+        Element element = scraper.extractJobPostElements(document).first();
+        String jobPostUrl = scraper.extractUrlForJobPostFromElement(url, element);
+        String trackedJobPostUrl = jobPostUrl + (jobPostUrl.contains("?") ? "&" : "?") + "utm_source=newsletter";
+
+        // Then
+        Assertions.assertTrue(JobSource.ARBEIDSPLASSEN_NAV.extractId(jobPostUrl).isPresent());
+        Assertions.assertEquals(JobSource.keyOf(jobPostUrl), JobSource.keyOf(trackedJobPostUrl));
+    }
+
+    @Test
+    @DisplayName("Ensure each job post element gives its own url")
+    void itShouldExtractDistinctUrlsForJobPostElements() {
+        // Given
+        String url = scraper.getCurrentUrl();
+        Elements elements = scraper.extractJobPostElements(getListViewDocument());
+
+        // When
+        Set<String> actual = elements.stream()
+                .map(element -> scraper.extractUrlForJobPostFromElement(url, element))
+                .collect(Collectors.toSet());
+
+        // Then
+        Assertions.assertEquals(elements.size(), actual.size());
+    }
+
     @Test
     @DisplayName("Ensure extracting title works")
     void itShouldExtractTitleForJobPostFromElement() {
@@ -140,4 +208,46 @@ public class ArbeidsplassenNavScraperTest extends HtmlDocumentProvider {
         Assertions.assertTrue(result.containsKey("Stillingstittel"));
     }
 
+    @Test
+    @DisplayName("Ensure streaming job post elements gives the same job posts as parsing the full page")
+    void itShouldStreamJobPostElements() throws IOException {
+        // Given
+        String url = scraper.getCurrentUrl();
+        List<String> expected = scraper.extractJobPostElements(getListViewDocument()).stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+        List<Element> elements = new ArrayList<>();
+
+        // When
+        StreamingCardParser.fromXPath(scraper.getXPath()).orElseThrow()
+                .parse(getListViewInputStream(), "UTF-8", url, elements::add);
+
+        // Then
+        List<String> actual = elements.stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+
+        Assertions.assertFalse(actual.isEmpty());
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Ensure reading the detail page up to the end of the job post gives the same fields as the full page")
+    void itShouldStopReadingDetailPageAfterJobPost() throws IOException {
+        // Given
+        Document full = getDetailViewDocument();
+        EarlyExitDocumentParser parser = new EarlyExitDocumentParser(
+                scraper.getDetailPageEndMarker(), scraper::hasRequiredDetailFields);
+
+        // When
+        Document partial = parser.parse(getDetailViewInputStream(), "UTF-8", scraper.getUrl());
+
+        // Then
+        Assertions.assertTrue(partial.outerHtml().length() < full.outerHtml().length());
+        Assertions.assertEquals(scraper.extractCompanyNameForJobPostFromDoc(full),
+                scraper.extractCompanyNameForJobPostFromDoc(partial));
+        Assertions.assertEquals(scraper.extractDescriptionForJobPostFromDoc(full),
+                scraper.extractDescriptionForJobPostFromDoc(partial));
+    }
+
 }
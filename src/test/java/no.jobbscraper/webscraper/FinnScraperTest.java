@@ -1,6 +1,7 @@
 package no.jobbscraper.webscraper;
 
 import no.jobbscraper.HtmlDocumentProvider;
+import no.jobbscraper.url.JobSource;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.junit.jupiter.api.Assertions;
@@ -8,7 +9,10 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,6 +45,21 @@ public class FinnScraperTest extends HtmlDocumentProvider {
         Assertions.assertTrue(actual.startsWith("https://www.finn.no/"));
     }
 
+    @Test
+    @DisplayName("Ensure the job post url has a job id, also with tracking parameters")
+    void itShouldExtractJobIdFromUrlForJobPost() {
+        // Given
+        String url = scraper.getCurrentUrl();
+        Document document = getListViewDocument();
+        Element element = scraper.extractJobPostElements(document).first();
+        String jobPostUrl = scraper.extractUrlForJobPostFromElement(url, element);
+        String trackedJobPostUrl = jobPostUrl + (jobPostUrl.contains("?") ? "&" : "?") + "utm_source=newsletter";
+
+        // Then
+        Assertions.assertTrue(JobSource.FINN.extractId(jobPostUrl).isPresent());
+        Assertions.assertEquals(JobSource.keyOf(jobPostUrl), JobSource.keyOf(trackedJobPostUrl));
+    }
+
     @Test
     @DisplayName("Ensure image url is present")
     void itShouldExtractImageUrlForJobPostFromElement() {
@@ -146,4 +165,62 @@ public class FinnScraperTest extends HtmlDocumentProvider {
         Assertions.assertTrue(result.containsKey("Stillingstittel"));
     }
 
+    @Test
+    @DisplayName("Ensure streaming job post elements gives the same job posts as parsing the full page")
+    void itShouldStreamJobPostElements() throws IOException {
+        // Given
+        String url = scraper.getCurrentUrl();
+        List<String> expected = scraper.extractJobPostElements(getListViewDocument()).stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+        List<Element> elements = new ArrayList<>();
+
+        // When
+        StreamingCardParser.fromXPath(scraper.getXPath()).orElseThrow()
+                .parse(getListViewInputStream(), "UTF-8", url, elements::add);
+
+        // Then
+        List<String> actual = elements.stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+
+        Assertions.assertFalse(actual.isEmpty());
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Ensure reading the detail page up to the end of the job post gives the same fields as the full page")
+    void itShouldStopReadingDetailPageAfterJobPost() throws IOException {
+        // Given
+        Document full = getDetailViewDocument();
+        EarlyExitDocumentParser parser = new EarlyExitDocumentParser(
+                scraper.getDetailPageEndMarker(), scraper::hasRequiredDetailFields);
+
+        // When
+        Document partial = parser.parse(getDetailViewInputStream(), "UTF-8", scraper.getUrl());
+
+        // Then
+        Assertions.assertTrue(partial.outerHtml().length() < full.outerHtml().length());
+        Assertions.assertEquals(scraper.extractCompanyNameForJobPostFromDoc(full),
+                scraper.extractCompanyNameForJobPostFromDoc(partial));
+        Assertions.assertEquals(scraper.extractDescriptionForJobPostFromDoc(full),
+                scraper.extractDescriptionForJobPostFromDoc(partial));
+    }
+
+    @Test
+    @DisplayName("Ensure the JSON-LD JobPosting is read from the detail page")
+    void itShouldExtractJobPostingJsonLd() {
+        // Given
+        Document document = getDetailViewDocument();
+
+        // When
+        JobPostingJsonLd actual = JobPostingJsonLd.extract(document).orElseThrow();
+
+        // Then
+        Assertions.assertEquals("NES Advantage Solutions AS", actual.companyName());
+        Assertions.assertTrue(actual.description().contains("Piping Engineer"));
+        Assertions.assertEquals(Set.of("Stord"), actual.locations());
+        Assertions.assertNull(actual.deadline());
+    }
+
 }
@@ -1,6 +1,7 @@
 package no.jobbscraper.webscraper;
 
 import no.jobbscraper.HtmlDocumentProvider;
+import no.jobbscraper.url.JobSource;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.junit.jupiter.api.Assertions;
@@ -8,7 +9,10 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -55,6 +59,21 @@ public class KarriereStartScraperTest extends HtmlDocumentProvider {
         Assertions.assertTrue(actual.startsWith("https://karrierestart.no/ledig-stilling/"));
     }
 
+    @Test
+    @DisplayName("Ensure the job post url has a job id, also with tracking parameters")
+    void itShouldExtractJobIdFromUrlForJobPost() {
+        // Given
+        String url = scraper.getCurrentUrl();
+        Document document = getListViewDocument();
+        Element element = scraper.extractJobPostElements(document).first();
+        String jobPostUrl = scraper.extractUrlForJobPostFromElement(url, element);
+        String trackedJobPostUrl = jobPostUrl + (jobPostUrl.contains("?") ? "&" : "?") + "utm_source=newsletter";
+
+        // Then
+        Assertions.assertTrue(JobSource.KARRIERESTART.extractId(jobPostUrl).isPresent());
+        Assertions.assertEquals(JobSource.keyOf(jobPostUrl), JobSource.keyOf(trackedJobPostUrl));
+    }
+
     @Test
     @DisplayName("Ensure image url is empty")
     void itShouldExtractImageUrlForJobPostFromElement() {
@@ -166,4 +185,46 @@ public class KarriereStartScraperTest extends HtmlDocumentProvider {
         Assertions.assertNotEquals(0, scraper.getMaxPage());
     }
 
+    @Test
+    @DisplayName("Ensure streaming job post elements gives the same job posts as parsing the full page")
+    void itShouldStreamJobPostElements() throws IOException {
+        // Given
+        String url = scraper.getCurrentUrl();
+        List<String> expected = scraper.extractJobPostElements(getListViewDocument()).stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+        List<Element> elements = new ArrayList<>();
+
+        // When
+        StreamingCardParser.fromXPath(scraper.getXPath()).orElseThrow()
+                .parse(getListViewInputStream(), "UTF-8", url, elements::add);
+
+        // Then
+        List<String> actual = elements.stream()
+                .map(element -> scraper.extractTitleForJobPostFromElement(url, element))
+                .toList();
+
+        Assertions.assertFalse(actual.isEmpty());
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Ensure reading the detail page up to the end of the job post gives the same fields as the full page")
+    void itShouldStopReadingDetailPageAfterJobPost() throws IOException {
+        // Given
+        Document full = getDetailViewDocument();
+        EarlyExitDocumentParser parser = new EarlyExitDocumentParser(
+                scraper.getDetailPageEndMarker(), scraper::hasRequiredDetailFields);
+
+        // When
+        Document partial = parser.parse(getDetailViewInputStream(), "UTF-8", scraper.getUrl());
+
+        // Then
+        Assertions.assertTrue(partial.outerHtml().length() < full.outerHtml().length());
+        Assertions.assertEquals(scraper.extractCompanyNameForJobPostFromDoc(full),
+                scraper.extractCompanyNameForJobPostFromDoc(partial));
+        Assertions.assertEquals(scraper.extractDescriptionForJobPostFromDoc(full),
+                scraper.extractDescriptionForJobPostFromDoc(partial));
+    }
+
 }
@@ -0,0 +1,87 @@
+package no.jobbscraper.webscraper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PageCursorTest {
+
+    @Test
+    @DisplayName("Ensure the remainder is spread over the first ranges")
+    void itShouldSpreadRemainderOverFirstRanges() {
+        // Given
+        int firstPage = 1;
+        int lastPage = 10;
+        int workers = 3;
+
+        // When
+        List<PageCursor> cursors = PageCursor.split(firstPage, lastPage, workers);
+
+        // Then
+        Assertions.assertEquals(List.of(1, 5, 8), cursors.stream().map(PageCursor::getPage).toList());
+        Assertions.assertEquals(List.of(4, 7, 10), cursors.stream().map(PageCursor::getLastPage).toList());
+    }
+
+    @Test
+    @DisplayName("Ensure there is one range per page when there are fewer pages than workers")
+    void itShouldSplitIntoOneRangePerPageWhenFewerPagesThanWorkers() {
+        // Given
+        int firstPage = 3;
+        int lastPage = 5;
+        int workers = 8;
+
+        // When
+        List<PageCursor> cursors = PageCursor.split(firstPage, lastPage, workers);
+
+        // Then
+        Assertions.assertEquals(3, cursors.size());
+        for (PageCursor cursor : cursors) {
+            Assertions.assertEquals(cursor.getPage(), cursor.getLastPage());
+        }
+    }
+
+    @Test
+    @DisplayName("Ensure no ranges are returned when the first page is after the last page")
+    void itShouldReturnNoRangesWhenFirstPageIsAfterLastPage() {
+        // Given
+        int firstPage = 6;
+        int lastPage = 5;
+        int workers = 4;
+
+        // When
+        List<PageCursor> cursors = PageCursor.split(firstPage, lastPage, workers);
+
+        // Then
+        Assertions.assertTrue(cursors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ensure the ranges cover every page exactly once, in order")
+    void itShouldCoverEveryPageExactlyOnce() {
+        for (int lastPage = 1; lastPage <= 40; lastPage++) {
+            for (int workers = 1; workers <= 12; workers++) {
+                // Given
+                int firstPage = 1;
+
+                // When
+                List<Integer> pages = new ArrayList<>();
+                for (PageCursor cursor : PageCursor.split(firstPage, lastPage, workers)) {
+                    while (cursor.hasPage()) {
+                        pages.add(cursor.getPage());
+                        cursor.advance();
+                    }
+                }
+
+                // Then
+                List<Integer> expected = new ArrayList<>();
+                for (int page = firstPage; page <= lastPage; page++) {
+                    expected.add(page);
+                }
+                Assertions.assertEquals(expected, pages, lastPage + " pages, " + workers + " workers");
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package no.jobbscraper.webscraper;
+
+import no.jobbscraper.database.Database;
+import no.jobbscraper.jobpost.JobPost;
+import no.jobbscraper.restapiclient.FakeRestApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class SendJobPostsTest {
+
+    private static final String POSTED_URL = "https://www.finn.no/job/fulltime/ad.html?finnkode=1";
+    private static final String REJECTED_URL = "https://www.finn.no/job/fulltime/ad.html?finnkode=2";
+    private static final String UNREACHABLE_URL = "https://www.finn.no/job/fulltime/ad.html?finnkode=3";
+
+    @TempDir
+    private Path folder;
+
+    @BeforeEach
+    public void setUp() {
+        Database.setFile(folder.resolve("test.db"));
+        Database.setUp();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Database.setFile(Path.of("test.db"));
+    }
+
+    @Test
+    @DisplayName("Ensure only the urls of job posts the REST API accepted are marked as scraped")
+    public void itShouldOnlyMarkUrlsOfPostedJobPostsAsScraped() {
+        // Given
+        BaseWebScraper scraper = new FinnScraper();
+        // Answers later, so the scraper has moved on before each post is answered
+        scraper.setApiClient(new FakeRestApiClient(jobPosts -> CompletableFuture.supplyAsync(() -> {
+            String url = jobPosts.get(0).url();
+            if (url.equals(UNREACHABLE_URL)) {
+                throw new IllegalStateException(new IOException("Connection refused"));
+            }
+            return url.equals(POSTED_URL);
+        }, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS))));
+        Map<String, Boolean> sent = new ConcurrentHashMap<>();
+
+        // When
+        for (String url : List.of(POSTED_URL, REJECTED_URL, UNREACHABLE_URL)) {
+            scraper.sendJobPostsLater(List.of(new JobPost.Builder(url, null, "Kokk").build()),
+                    posted -> sent.put(url, posted));
+        }
+        scraper.awaitPendingPosts();
+
+        // Then
+        Assertions.assertEquals(Map.of(POSTED_URL, true, REJECTED_URL, false, UNREACHABLE_URL, false), sent);
+        Assertions.assertEquals(List.of(REJECTED_URL, UNREACHABLE_URL),
+                Database.filterUnseen(List.of(POSTED_URL, REJECTED_URL, UNREACHABLE_URL), scraper.getFullIp()));
+    }
+}